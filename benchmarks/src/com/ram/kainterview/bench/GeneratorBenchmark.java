@@ -0,0 +1,83 @@
+/**
+ * Package for the benchmarks of the infection implementations for the Khan 
+ * Academy interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ram.kainterview.user.UserGenerator;
+import com.ram.kainterview.user.UserGraph;
+
+/**
+ * Benchmarks of the random user base generation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratorBenchmark {
+
+	/**
+	 * Minimum number of users in the user base
+	 */
+	@Param({"100", "1000"})
+	public int minUsers;
+
+	/**
+	 * Maximum number of students per user
+	 */
+	@Param({"5", "10"})
+	public int maxStudents;
+
+	/**
+	 * Levels of coach-student relationships
+	 */
+	@Param({"2", "3"})
+	public int levels;
+
+	/**
+	 * Generates a user base
+	 * @return the user base (consumed by JMH)
+	 */
+	@Benchmark
+	public UserGraph generateGraph() {
+		return UserGenerator.generateGraph(minUsers, maxStudents, levels);
+	}
+
+	/**
+	 * Generates a user base with the seeded parallel generator
+	 * @return the user base (consumed by JMH)
+	 */
+	@Benchmark
+	public UserGraph generateSeededGraph() {
+		return UserGenerator.generateGraph(minUsers, maxStudents, levels, 42);
+	}
+
+}
@@ -0,0 +1,164 @@
+/**
+ * Package for the benchmarks of the infection implementations for the Khan 
+ * Academy interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ram.kainterview.user.BatchInfection;
+import com.ram.kainterview.user.UserGenerator;
+import com.ram.kainterview.user.UserGraph;
+
+/**
+ * Benchmarks of the infection algorithms on a generated user base.
+ * Every infection uses a new version number so that each invocation actually
+ * changes the versions of the users it reaches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InfectionBenchmark {
+
+	/**
+	 * Number of seed users cycled through by the benchmarks
+	 */
+	private static final int SEEDS = 1024;
+
+	/**
+	 * Minimum number of users in the user base
+	 */
+	@Param({"100", "1000"})
+	public int minUsers;
+
+	/**
+	 * Maximum number of students per user
+	 */
+	@Param({"5", "10"})
+	public int maxStudents;
+
+	/**
+	 * Levels of coach-student relationships
+	 */
+	@Param({"3"})
+	public int levels;
+
+	/**
+	 * User base
+	 */
+	private UserGraph graph;
+
+	/**
+	 * Seed users to infect from
+	 */
+	private int[] seeds;
+
+	/**
+	 * Position of the next seed
+	 */
+	private int next;
+
+	/**
+	 * Last version number used
+	 */
+	private int version;
+
+	/**
+	 * Generates the user base and the seeds (with a fixed random seed so that
+	 * runs are comparable)
+	 */
+	@Setup
+	public void setup() {
+		graph = UserGenerator.generateGraph(minUsers, maxStudents, levels);
+		graph.components();
+		Random random = new Random(42);
+		seeds = new int[SEEDS];
+		for (int i = 0; i < SEEDS; i++)
+			seeds[i] = random.nextInt(graph.size());
+	}
+
+	/**
+	 * Gets the next seed user
+	 * @return the index of the user
+	 */
+	private int nextSeed() {
+		next = (next + 1) & (SEEDS - 1);
+		return seeds[next];
+	}
+
+	/**
+	 * Total infection from a single user
+	 */
+	@Benchmark
+	public void totalInfect() {
+		graph.user(nextSeed()).totalInfect(++version);
+	}
+
+	/**
+	 * Limited infection of a tenth of the user base from a single user
+	 * @return whether the infection terminated early
+	 */
+	@Benchmark
+	public boolean limitedInfect() {
+		return graph.user(nextSeed()).limitedInfect(++version, 
+				graph.size() / 10);
+	}
+
+	/**
+	 * Size of the component of a single user
+	 * @return the size
+	 */
+	@Benchmark
+	public int graphSize() {
+		return graph.user(nextSeed()).graphSize();
+	}
+
+	/**
+	 * Selection of whole components for strict infection of a tenth of the 
+	 * user base
+	 * @return the components
+	 */
+	@Benchmark
+	public int[] strictSelection() {
+		return graph.components().componentsOfTotalSize(graph.size() / 10);
+	}
+
+	/**
+	 * Total infection from all seed users at once
+	 * @return the number of users changed
+	 */
+	@Benchmark
+	public long batchInfect() {
+		return BatchInfection.totalInfect(graph, seeds, ++version);
+	}
+
+}
@@ -0,0 +1,137 @@
+/**
+ * Package for the benchmarks of the infection implementations for the Khan 
+ * Academy interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ram.kainterview.user.UserGenerator;
+import com.ram.kainterview.user.UserGraph;
+import com.ram.kainterview.user.VersionPublisher;
+
+/**
+ * Benchmarks of looking up the version of a user from several threads, in 
+ * the model and in the published snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class LookupBenchmark {
+
+	/**
+	 * Number of users looked up, cycled through by the benchmarks
+	 */
+	private static final int LOOKUPS = 1 << 16;
+
+	/**
+	 * Minimum number of users in the user base
+	 */
+	@Param({"1000", "100000"})
+	public int minUsers;
+
+	/**
+	 * User base
+	 */
+	private UserGraph graph;
+
+	/**
+	 * Publisher of the snapshots of the versions
+	 */
+	private VersionPublisher publisher;
+
+	/**
+	 * Users to look up
+	 */
+	private int[] users;
+
+	/**
+	 * Generates the user base, infects a few components and publishes the 
+	 * versions (with a fixed random seed so that runs are comparable)
+	 */
+	@Setup
+	public void setup() {
+		graph = UserGenerator.generateGraph(minUsers, 5, 3, 42);
+		publisher = new VersionPublisher(graph);
+		Random random = new Random(42);
+		for (int i = 0; i < 100; i++)
+			graph.user(random.nextInt(graph.size())).totalInfect(i);
+		users = new int[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++)
+			users[i] = random.nextInt(graph.size());
+	}
+
+	/**
+	 * Looks a version up in the model (through the component of the user)
+	 * @param position the position of the next user
+	 * @return the version
+	 */
+	@Benchmark
+	public int lookupModel(Position position) {
+		return graph.version(users[position.next()]);
+	}
+
+	/**
+	 * Looks a version up in the published snapshot
+	 * @param position the position of the next user
+	 * @return the version
+	 */
+	@Benchmark
+	public int lookupSnapshot(Position position) {
+		return publisher.current().version(users[position.next()]);
+	}
+
+	/**
+	 * Position of a thread in the users to look up
+	 */
+	@State(Scope.Thread)
+	public static class Position {
+
+		/**
+		 * Position of the last user looked up
+		 */
+		private int next;
+
+		/**
+		 * Moves to the next user
+		 * @return the position of the next user
+		 */
+		private int next() {
+			next = (next + 1) & (LOOKUPS - 1);
+			return next;
+		}
+
+	}
+
+}
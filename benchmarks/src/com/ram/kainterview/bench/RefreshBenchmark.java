@@ -0,0 +1,141 @@
+/**
+ * Package for the benchmarks of the infection implementations for the Khan 
+ * Academy interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ram.kainterview.GraphView;
+import com.ram.kainterview.user.ChangeLog;
+import com.ram.kainterview.user.User;
+import com.ram.kainterview.user.UserGenerator;
+import com.ram.kainterview.user.UserGraph;
+
+/**
+ * Benchmarks of the controller's view refresh after an infection: pushing 
+ * every user of the user base (the original refresh loop) versus pushing the
+ * users recorded in the change log
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RefreshBenchmark {
+
+	/**
+	 * Minimum number of users in the user base
+	 */
+	@Param({"100", "1000"})
+	public int minUsers;
+
+	/**
+	 * Maximum number of students per user
+	 */
+	@Param({"5", "10"})
+	public int maxStudents;
+
+	/**
+	 * User base
+	 */
+	private UserGraph graph;
+
+	/**
+	 * Change log registered on the user base
+	 */
+	private ChangeLog changes;
+
+	/**
+	 * View that discards all updates
+	 */
+	private GraphView view;
+
+	/**
+	 * Last version number used
+	 */
+	private int version;
+
+	/**
+	 * Generates the user base and registers the change log
+	 * @param blackhole sink for the updates sent to the view
+	 */
+	@Setup
+	public void setup(Blackhole blackhole) {
+		graph = UserGenerator.generateGraph(minUsers, maxStudents, 3);
+		changes = new ChangeLog(graph.size());
+		graph.addVersionListener(changes);
+		view = new GraphView() {
+			@Override
+			public void addNode(int id, int label, int[] toIds, 
+					int[] fromIds) {
+				blackhole.consume(id);
+			}
+
+			@Override
+			public void updateNode(int id, int label) {
+				blackhole.consume(id);
+				blackhole.consume(label);
+			}
+
+			@Override
+			public void queueUpdate(int id, int label) {
+				updateNode(id, label);
+			}
+
+			@Override
+			public void flushUpdates() {
+				// updates are applied as they are queued
+			}
+		};
+	}
+
+	/**
+	 * Infects the component of the first user and refreshes every user
+	 */
+	@Benchmark
+	public void fullRefresh() {
+		graph.user(0).totalInfect(++version);
+		changes.drain();
+		for (User user : graph.users())
+			view.updateNode(user.id(), user.version());
+	}
+
+	/**
+	 * Infects the component of the first user and refreshes the changed users
+	 */
+	@Benchmark
+	public void changeLogRefresh() {
+		graph.user(0).totalInfect(++version);
+		for (int user : changes.drain())
+			view.queueUpdate(user, graph.version(user));
+	}
+
+}
@@ -0,0 +1,5 @@
+/**
+ * Package for the benchmarks of the infection implementations for the Khan 
+ * Academy interview
+ */
+package com.ram.kainterview.bench;
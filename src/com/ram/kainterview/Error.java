@@ -24,7 +24,13 @@ public enum Error {
 	MAX_STUDENTS("<MAXIMUM_STUDENTS> must be an integer >= 0"),
 	LEVELS("<LEVELS> must be an integer > 0"),
 	NUM_USERS("Number of users must be an integer >= 0"),
-	NO_STRICT("Not possible to infect exactly this number of users");
+	NO_STRICT("Not possible to infect exactly this number of users"),
+	USER_BASE("Users must belong to the same user base"),
+	TOO_MANY_USERS("User base exceeds the maximum number of users or relations"),
+	SNAPSHOT("File is not a valid user base snapshot"),
+	EDGE_LIST("Invalid edge list at line"),
+	VERSION_LOG("File is not a valid version log of this user base"),
+	LOG_FAILED("Version log failed to write and accepts no more changes");
 	
 	/**
 	 * Message for the error
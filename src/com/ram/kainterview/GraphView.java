@@ -16,8 +16,6 @@
  */
 package com.ram.kainterview;
 
-import java.util.List;
-
 /**
  * Interface for modifying the visual graph
  */
@@ -30,14 +28,30 @@ public interface GraphView {
 	 * @param toIds the id's of the nodes that are connected to this node
 	 * @param fromIds the id's of the nodes that are connected from this node
 	 */
-	public void addNode(String id, int label, List<String> toIds, 
-			List<String> fromIds);
+	public void addNode(int id, int label, int[] toIds, int[] fromIds);
 	
 	/**
 	 * Updates the label of the specified node
 	 * @param id the id of the node
 	 * @param label the new label
 	 */
-	public void updateNode(String id, int label);
+	public void updateNode(int id, int label);
+	
+	/**
+	 * Queues a label update of the specified node from any thread. Queued 
+	 * updates are coalesced per node (the latest label wins) and applied 
+	 * together by the next {@link #flushUpdates()}.
+	 * @param id the id of the node
+	 * @param label the new label
+	 */
+	public void queueUpdate(int id, int label);
+	
+	/**
+	 * Applies the queued label updates to the graph (at most a bounded number
+	 * of them, the rest are applied by the following flushes). Must be called
+	 * on the thread that pumps the viewer events into the graph, so that a 
+	 * single thread mutates the graph.
+	 */
+	public void flushUpdates();
 	
 }
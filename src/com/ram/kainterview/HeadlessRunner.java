@@ -0,0 +1,370 @@
+/**
+ * Package for the infection implementations for the Khan Academy interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.ram.kainterview.user.ComponentChange;
+import com.ram.kainterview.user.IdDictionary;
+import com.ram.kainterview.user.InfectionJournal;
+import com.ram.kainterview.user.InfectionResult;
+import com.ram.kainterview.user.SeedScorer;
+import com.ram.kainterview.user.User;
+import com.ram.kainterview.user.UserGraph;
+import com.ram.kainterview.user.VersionListener;
+import com.ram.kainterview.user.VersionLog;
+
+/**
+ * Runs a script of infections on a user base without a view and prints the 
+ * result and the timing of each infection followed by a summary.
+ * Each line of a script is one of the following commands (blank lines and 
+ * lines starting with '#' are skipped):
+ * total &lt;USER&gt; [&lt;VERSION&gt;]
+ * limited &lt;USER&gt; &lt;USERS&gt; [&lt;VERSION&gt;]
+ * auto &lt;USERS&gt; (limited infection from the best seed)
+ * strict &lt;USERS&gt;
+ * undo [&lt;ROLLOUTS&gt;] (rolls back the last infection commands)
+ * where a user is given by its external id if the user base has any (or its
+ * id otherwise) and the version defaults to the version of the user + 1.
+ * A runner observes the versions of the user base until it is closed.
+ */
+public class HeadlessRunner implements Closeable {
+
+	/**
+	 * User base
+	 */
+	private final UserGraph graph;
+
+	/**
+	 * Output of the results
+	 */
+	private final PrintStream out;
+
+	/**
+	 * Number of version changes since the runner was created
+	 */
+	private final LongAdder changes = new LongAdder();
+
+	/**
+	 * Observer counting the version changes
+	 */
+	private final VersionListener counter;
+
+	/**
+	 * Maximum number of infection commands that can be undone
+	 */
+	private static final int UNDO_LIMIT = 64;
+
+	/**
+	 * Journal of the last infection commands
+	 */
+	private final InfectionJournal journal;
+
+	/**
+	 * Write-ahead log committed after each command (null if there is none)
+	 */
+	private final VersionLog log;
+
+	/**
+	 * Metrics of the infections
+	 */
+	private final InfectionMetrics metrics = InfectionMetrics.instance();
+
+	/**
+	 * Lock running the commands one at a time
+	 */
+	private final Lock lock = new ReentrantLock();
+
+	/**
+	 * Constructs a runner for the given user base
+	 * @param graph the user base
+	 * @param out the output of the results
+	 */
+	public HeadlessRunner(UserGraph graph, PrintStream out) {
+		this(graph, out, null);
+	}
+
+	/**
+	 * Constructs a runner for the given user base that makes the changes of 
+	 * each command durable in a write-ahead log
+	 * @param graph the user base
+	 * @param out the output of the results
+	 * @param log the write-ahead log of the user base (may be null)
+	 */
+	public HeadlessRunner(UserGraph graph, PrintStream out, VersionLog log) {
+		this.graph = graph;
+		this.out = out;
+		this.log = log;
+		counter = new VersionListener() {
+			@Override
+			public void versionChanged(int user, int oldVersion, 
+					int newVersion) {
+				changes.increment();
+			}
+
+			@Override
+			public void componentVersionChanging(ComponentChange change) {
+				changes.add(change.changed());
+			}
+		};
+		graph.addVersionListener(counter);
+		journal = new InfectionJournal(graph, UNDO_LIMIT);
+	}
+
+	/**
+	 * Stops observing the user base (the infections can no longer be undone)
+	 */
+	@Override
+	public void close() {
+		graph.removeVersionListener(journal);
+		graph.removeVersionListener(counter);
+	}
+
+	/**
+	 * Runs all commands of a script
+	 * @param script the script
+	 * @return the number of version changes made by the script
+	 * @throws IOException if the script cannot be read
+	 * @throws IllegalArgumentException if a line of the script is invalid
+	 */
+	public long run(BufferedReader script) throws IOException {
+		long start = System.nanoTime();
+		long before = changes.sum();
+		int commands = 0;
+		int lineNumber = 0;
+		String line;
+		while ((line = script.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+			try {
+				out.println(execute(line.split("\\s+")));
+			} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+				throw new IllegalArgumentException("Line " + lineNumber + 
+						": " + e.getMessage(), e);
+			}
+			commands++;
+		}
+
+		long changed = changes.sum() - before;
+		double millis = (System.nanoTime() - start) / 1e6;
+		out.printf("%d commands, %d users changed in %.3f ms (%.0f users/s)%n",
+				commands, changed, millis, 
+				millis == 0 ? 0 : changed / millis * 1000);
+		return changed;
+	}
+
+	/**
+	 * Executes one command (commands run one at a time)
+	 * @param line the command
+	 * @return the result and the timing of the command
+	 * @throws IOException if the write-ahead log cannot be written
+	 * @throws IllegalArgumentException if the command is invalid
+	 */
+	public String execute(String line) throws IOException {
+		line = line.trim();
+		if (line.isEmpty())
+			throw new IllegalArgumentException("Empty command");
+		try {
+			return execute(line.split("\\s+"));
+		} catch (IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Executes one command once the commands before it are done
+	 * @param command the words of the command
+	 * @return the result and the timing of the command
+	 * @throws IOException if the write-ahead log cannot be written
+	 */
+	private String execute(String[] command) throws IOException {
+		lock.lock();
+		try {
+			return run(command);
+		} finally {
+			// only the changes of this command are part of its rollout
+			journal.end();
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Runs one command
+	 * @param command the words of the command
+	 * @return the result and the timing of the command
+	 * @throws IOException if the write-ahead log cannot be written
+	 */
+	private String run(String[] command) throws IOException {
+		long start = System.nanoTime();
+		long before = changes.sum();
+		String result = "";
+		switch (command[0]) {
+		case "total": {
+			checkLength(command, 2, 3);
+			User user = user(command[1]);
+			int version = version(command, 2, user);
+			journal.begin();
+			metrics.record(InfectionType.TOTAL, changes::sum, counter -> {
+				user.totalInfect(version, counter);
+				return null;
+			});
+			break;
+		}
+		case "limited": {
+			checkLength(command, 3, 4);
+			User user = user(command[1]);
+			int users = number(command[2]);
+			int version = version(command, 3, user);
+			journal.begin();
+			InfectionResult outcome = metrics.record(InfectionType.LIMITED, 
+					changes::sum, 
+					counter -> user.exactInfect(version, users, counter));
+			result = " (" + outcome.splitPairs() + " pairs split)";
+			break;
+		}
+		case "auto": {
+			checkLength(command, 2, 2);
+			int users = number(command[1]);
+			// the scoring is part of the work of the infection
+			InfectionResult outcome = metrics.record(InfectionType.LIMITED, 
+					changes::sum, counter -> {
+				InfectionResult[] best = SeedScorer.bestSeeds(graph, users, 1,
+						counter);
+				if (best.length == 0)
+					return null;
+				User user = graph.user(best[0].seed());
+				journal.begin();
+				return user.exactInfect(user.version()+1, users, counter);
+			});
+			if (outcome == null)
+				break;
+			result = " (from " + graph.user(outcome.seed()).externalId() + 
+					", " + outcome.splitPairs() + " pairs split)";
+			break;
+		}
+		case "strict": {
+			checkLength(command, 2, 2);
+			int users = number(command[1]);
+			// a rollout without any change is not kept
+			journal.begin();
+			int[] selected = metrics.record(InfectionType.STRICT, 
+					changes::sum, 
+					counter -> graph.strictInfect(users, counter));
+			if (selected == null) {
+				result = " (" + Error.NO_STRICT + ")";
+				break;
+			}
+			result = " (" + selected.length + " components)";
+			break;
+		}
+		case "undo": {
+			checkLength(command, 1, 2);
+			int rollouts = command.length > 1 ? number(command[1]) : 1;
+			int undone = 0;
+			while (undone < rollouts && journal.rollback() >= 0)
+				undone++;
+			result = " (" + undone + " rollouts undone)";
+			break;
+		}
+		default:
+			throw new IllegalArgumentException("Unknown command: " + 
+					command[0]);
+		}
+		if (log != null)
+			log.commit();
+		return String.format("%s: %d users changed in %.3f ms%s", 
+				String.join(" ", command), changes.sum() - before, 
+				(System.nanoTime() - start) / 1e6, result);
+	}
+
+	/**
+	 * Checks the number of words of a command
+	 * @param command the words of the command
+	 * @param min the minimum number of words
+	 * @param max the maximum number of words
+	 */
+	private static void checkLength(String[] command, int min, int max) {
+		if (command.length < min || command.length > max)
+			throw new IllegalArgumentException("Wrong number of arguments for"
+					+ " " + command[0]);
+	}
+
+	/**
+	 * Looks up a user by its external id (or its id if the user base has no
+	 * external ids)
+	 * @param id the id
+	 * @return the user
+	 */
+	private User user(String id) {
+		return graph.user(index(graph, id));
+	}
+
+	/**
+	 * Looks up the index of a user by its external id (or its id if the user
+	 * base has no external ids)
+	 * @param graph the user base
+	 * @param id the id
+	 * @return the index of the user
+	 * @throws IllegalArgumentException if no user has this id
+	 */
+	static int index(UserGraph graph, String id) {
+		IdDictionary externalIds = graph.externalIds();
+		int user = -1;
+		try {
+			user = externalIds == null ? Integer.parseInt(id) : 
+				externalIds.indexOf(id);
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		if (user < 0 || user >= graph.size())
+			throw new IllegalArgumentException("Unknown user: " + id);
+		return user;
+	}
+
+	/**
+	 * Gets the optional version of a command
+	 * @param command the words of the command
+	 * @param index the position of the version
+	 * @param user the user to infect from
+	 * @return the version, or the version of the user + 1 if it is absent
+	 */
+	private static int version(String[] command, int index, User user) {
+		return command.length > index ? Integer.parseInt(command[index]) : 
+			user.version()+1;
+	}
+
+	/**
+	 * Parses a number of users
+	 * @param number the number
+	 * @return the number of users
+	 */
+	private static int number(String number) {
+		int users = Integer.parseInt(number);
+		if (users < 0)
+			throw new IllegalArgumentException(Error.NUM_USERS.toString());
+		return users;
+	}
+
+}
@@ -19,39 +19,51 @@ package com.ram.kainterview;
 import java.awt.Color;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.JTextField;
+import javax.swing.SwingWorker;
 
 import org.graphstream.graph.Graph;
 import org.graphstream.ui.view.Viewer;
 import org.graphstream.ui.view.ViewerListener;
 import org.graphstream.ui.view.ViewerPipe;
 
+import com.ram.kainterview.user.ChangeLog;
+import com.ram.kainterview.user.ComponentChange;
+import com.ram.kainterview.user.InfectionResult;
+import com.ram.kainterview.user.SeedScorer;
 import com.ram.kainterview.user.User;
+import com.ram.kainterview.user.UserGraph;
+import com.ram.kainterview.user.VersionListener;
+import com.ram.kainterview.user.VersionLog;
 
 /**
  * Controller of the infection model
  */
 public class InfectionControllerImpl implements InfectionController {
 
+	/**
+	 * Longest wait in milliseconds for viewer events before the queued label 
+	 * updates are applied (about one rendering frame)
+	 */
+	private static final long FRAME_MILLIS = 16;
+
 	/**
 	 * View instance to communicate changes to the view
 	 */
 	private GraphView view;
 	
 	/**
-	 * Map of all id's to users in the user base
+	 * User base
 	 */
-	private Map<String,User> users;
-
+	private UserGraph graph;
+	
 	/**
 	 * Manages GraphStream's ViewerPipe pump requests
 	 */
@@ -72,14 +84,62 @@ public class InfectionControllerImpl implements InfectionController {
 	 */
 	private InfectionType type;
 
+	/**
+	 * Users whose version changed since the view was last refreshed
+	 */
+	private ChangeLog changes;
+
+	/**
+	 * Number of version changes since the controller was constructed (the 
+	 * change log is drained on refresh and records a user once, so it cannot
+	 * be counted)
+	 */
+	private LongAdder changeCount;
+
+	/**
+	 * Write-ahead log committed after each infection (null if there is none)
+	 */
+	private VersionLog log;
+
+	/**
+	 * Metrics of the infections
+	 */
+	private InfectionMetrics metrics;
+
 	/**
 	 * Constructs a controller with the given user base
-	 * @param users list of all the users in the user base
+	 * @param graph the user base
 	 */
-	public InfectionControllerImpl(List<User> users) {
-		this.users = new HashMap<>();
-		for (User user : users)
-			this.users.put(user.id(), user);
+	public InfectionControllerImpl(UserGraph graph) {
+		this(graph, null);
+	}
+
+	/**
+	 * Constructs a controller with the given user base whose infections are
+	 * made durable in a write-ahead log
+	 * @param graph the user base
+	 * @param log the write-ahead log of the user base (may be null)
+	 */
+	public InfectionControllerImpl(UserGraph graph, VersionLog log) {
+		this.graph = graph;
+		this.log = log;
+		metrics = InfectionMetrics.instance();
+
+		changes = new ChangeLog(graph.size());
+		graph.addVersionListener(changes);
+		changeCount = new LongAdder();
+		graph.addVersionListener(new VersionListener() {
+			@Override
+			public void versionChanged(int user, int oldVersion, 
+					int newVersion) {
+				changeCount.increment();
+			}
+
+			@Override
+			public void componentVersionChanging(ComponentChange change) {
+				changeCount.add(change.changed());
+			}
+		});
 
 		type = InfectionType.TOTAL; // default infection type
 		loop = true; // enable graph rendering
@@ -89,16 +149,14 @@ public class InfectionControllerImpl implements InfectionController {
 	public void init(GraphView view, Graph graph, Viewer viewer) {
 		this.view = view;
 		
-		for (Entry<String,User> entry : users.entrySet()) {
-			User user = entry.getValue();
-
+		for (User user : this.graph.users()) {
 			// build ids of adjacent nodes
-			List<String> toIds = new LinkedList<String>();
-			List<String> fromIds = new LinkedList<String>();
-			for (User coach : user.coaches())
-				toIds.add(coach.id());
-			for (User student : user.students())
-				fromIds.add(student.id());
+			int[] toIds = new int[user.coaches().size()];
+			int[] fromIds = new int[user.students().size()];
+			for (int i = 0; i < toIds.length; i++)
+				toIds[i] = user.coaches().get(i).id();
+			for (int i = 0; i < fromIds.length; i++)
+				fromIds[i] = user.students().get(i).id();
 
 			view.addNode(user.id(),user.version(), toIds, fromIds);
 		}
@@ -115,13 +173,17 @@ public class InfectionControllerImpl implements InfectionController {
 			public void buttonReleased(String id) {
 				// remove highlighting on release
 				graph.getNode(id).removeAttribute("ui.class");
+				User user = InfectionControllerImpl.this.graph.user(
+						Integer.parseInt(id));
 				
 				switch(type) {
 				case TOTAL:
-					users.get(id).totalInfect(users.get(id).version()+1);
-					for (Entry<String,User> entry : users.entrySet())
-						view.updateNode(entry.getKey(), 
-								entry.getValue().version());
+					metrics.record(InfectionType.TOTAL, changeCount::sum, 
+							counter -> {
+						user.totalInfect(user.version()+1, counter);
+						return null;
+					});
+					refreshView();
 					break;
 				case LIMITED:
 					int num = 0;
@@ -139,10 +201,11 @@ public class InfectionControllerImpl implements InfectionController {
 								JOptionPane.ERROR_MESSAGE);
 						break;
 					}
-					users.get(id).limitedInfect(users.get(id).version()+1, num);
-					for (Entry<String,User> entry : users.entrySet())
-						view.updateNode(entry.getKey(), 
-								entry.getValue().version());
+					int users = num;
+					metrics.record(InfectionType.LIMITED, changeCount::sum, 
+							counter -> user.exactInfect(user.version()+1, 
+									users, counter));
+					refreshView();
 					break;
 				case STRICT:
 					JOptionPane.showMessageDialog(new JFrame(), "In strict "
@@ -165,19 +228,56 @@ public class InfectionControllerImpl implements InfectionController {
 		fromViewer.addSink(graph);
 		fromViewer.removeElementSink(graph); // for issue in library
 
-		// run on separate thread to prevent UI thread blocking
+		// run on separate thread to prevent UI thread blocking (this thread 
+		// is the only one mutating the graph: it pumps the viewer events and 
+		// applies the queued labels)
 		new Thread(() -> {
 			while (loop) {
 				// request the pipe to check if the viewer thread sent events
 				try {
-					fromViewer.blockingPump();
+					fromViewer.blockingPump(FRAME_MILLIS);
 				} catch (InterruptedException e) {
 					e.printStackTrace();
 				}
+				view.flushUpdates();
 			}
 		}).start();
 	}
 	
+	/**
+	 * Commits the changes to the write-ahead log and then queues them to the
+	 * view (forces the log to the disk, so it is never called on the event 
+	 * dispatch thread)
+	 */
+	private void refreshView() {
+		try {
+			commitLog();
+		} catch (IOException e) {
+			JOptionPane.showMessageDialog(new JFrame(), e.getMessage(),
+					"Error", JOptionPane.ERROR_MESSAGE);
+		}
+		queueLabels();
+	}
+
+	/**
+	 * Makes the changes durable in the write-ahead log (if there is one)
+	 * @throws IOException if the log cannot be written
+	 */
+	private void commitLog() throws IOException {
+		if (log != null)
+			log.commit();
+	}
+
+	/**
+	 * Queues the versions of the users that changed since the last refresh to
+	 * the view (cost is proportional to the number of changed users rather 
+	 * than the size of the user base, and the pump thread applies them)
+	 */
+	private void queueLabels() {
+		for (int user : changes.drain())
+			view.queueUpdate(user, graph.version(user));
+	}
+
 	@Override
 	public void registerInfectField(JTextField infectTextField) {
 		this.infectTextField = infectTextField;
@@ -211,6 +311,7 @@ public class InfectionControllerImpl implements InfectionController {
 				type = InfectionType.LIMITED;
 				infect.setText("Limited Infection");
 				infectTextField.setVisible(true);
+				execute.setVisible(true);
 				break;
 			case LIMITED:
 				type = InfectionType.STRICT;
@@ -232,45 +333,72 @@ public class InfectionControllerImpl implements InfectionController {
 	public void registerExecuteButton(JButton execute) {
 		this.execute = execute;
 		execute.addActionListener((event) -> {
-			assert type.equals(InfectionType.STRICT);
+			assert !type.equals(InfectionType.TOTAL);
 			
-			boolean completed = false;
-			
-			for (Entry<String,User> entry : users.entrySet()) {
-				User user = entry.getValue();
-				
-				int num = 0;
-				try {
-					// read number of users from text field
-					num = Integer.parseInt(
-							infectTextField.getText().toString());
-					if (num < 0) {
-						JOptionPane.showMessageDialog(new JFrame(), 
-								Error.NUM_USERS,"Error",
-								JOptionPane.ERROR_MESSAGE);
-						return;
-					}
-				} catch (NumberFormatException e) {
+			int num = 0;
+			try {
+				// read number of users from text field
+				num = Integer.parseInt(infectTextField.getText().toString());
+				if (num < 0) {
 					JOptionPane.showMessageDialog(new JFrame(), 
 							Error.NUM_USERS,"Error",
 							JOptionPane.ERROR_MESSAGE);
 					return;
 				}
-				
-				if (user.graphSize() == num) {
-					user.totalInfect(user.version()+1);
-					completed = true;
-					break;
-				}
-			}
-			
-			if (!completed)
+			} catch (NumberFormatException e) {
 				JOptionPane.showMessageDialog(new JFrame(), 
-						Error.NO_STRICT,"Error",
+						Error.NUM_USERS,"Error",
 						JOptionPane.ERROR_MESSAGE);
-			else
-				for (Entry<String,User> entry : users.entrySet())
-					view.updateNode(entry.getKey(), entry.getValue().version());
+				return;
+			}
+			
+			// infect off the event dispatch thread (scoring the seeds and 
+			// committing the write-ahead log may take a while)
+			InfectionType infection = type;
+			int users = num;
+			execute.setEnabled(false);
+			new SwingWorker<Boolean, Void>() {
+				@Override
+				protected Boolean doInBackground() throws IOException {
+					boolean completed = true;
+					if (infection.equals(InfectionType.LIMITED)) {
+						// start from the seed that splits the fewest pairs
+						InfectionResult[] best = SeedScorer.bestSeeds(graph, 
+								users, 1);
+						if (best.length != 0) {
+							User user = graph.user(best[0].seed());
+							metrics.record(InfectionType.LIMITED, 
+									changeCount::sum, counter -> 
+									user.exactInfect(user.version()+1, users,
+											counter));
+						}
+					} else {
+						// infect whole connected components of exactly this 
+						// total size
+						completed = metrics.record(InfectionType.STRICT, 
+								changeCount::sum, counter -> 
+								graph.strictInfect(users, counter)) != null;
+					}
+					commitLog();
+					return completed;
+				}
+
+				@Override
+				protected void done() {
+					execute.setEnabled(true);
+					try {
+						if (!get())
+							JOptionPane.showMessageDialog(new JFrame(), 
+									Error.NO_STRICT,"Error",
+									JOptionPane.ERROR_MESSAGE);
+					} catch (InterruptedException | ExecutionException e) {
+						JOptionPane.showMessageDialog(new JFrame(), 
+								e.getMessage(), "Error", 
+								JOptionPane.ERROR_MESSAGE);
+					}
+					queueLabels();
+				}
+			}.execute();
 		});
 	}
 
@@ -281,7 +409,9 @@ public class InfectionControllerImpl implements InfectionController {
 			+ "' button to toggle between infection types.\nPress any "
 			+ "node (represents a user) to infect from that user.\nFor "
 			+ "limited infection, enter the number of users to be "
-			+ "infected \nbefore selecting a node. However, when using "
+			+ "infected \nbefore selecting a node (or press 'Execute' to "
+			+ "start from the node \nthat splits the fewest coach-student "
+			+ "pairs). However, when using "
 			+ "strict limited \ninfection, the application will "
 			+ "automatically attempt the infection\nupon pressing the "
 			+ "'Execute' button.\n\nFor information, visit "
@@ -0,0 +1,216 @@
+/**
+ * Package for the infection implementations for the Khan Academy interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.ram.kainterview.user.TraversalCounter;
+
+/**
+ * Metrics of the infections exposed through JMX: counters of the users 
+ * visited, the relations scanned and the users changed, a latency histogram 
+ * per {@link InfectionType}, and latency histograms of the user-base 
+ * generation and of the view refreshes. The metrics of the application are
+ * registered with the platform MBean server under the domain 
+ * "com.ram.kainterview" (see {@link #instance()}).
+ */
+public class InfectionMetrics implements InfectionMetricsMBean {
+
+	/**
+	 * Domain of the names of the MBeans
+	 */
+	private static final String DOMAIN = "com.ram.kainterview";
+
+	/**
+	 * Number of infections run
+	 */
+	private final LongAdder infections = new LongAdder();
+
+	/**
+	 * Number of users visited by the infections
+	 */
+	private final LongAdder usersVisited = new LongAdder();
+
+	/**
+	 * Number of relations scanned by the infections
+	 */
+	private final LongAdder edgesTraversed = new LongAdder();
+
+	/**
+	 * Number of users changed by the infections
+	 */
+	private final LongAdder usersChanged = new LongAdder();
+
+	/**
+	 * Latencies of the infections of each type
+	 */
+	private final Map<InfectionType,LatencyHistogram> latencies;
+
+	/**
+	 * Latencies of the user-base generations
+	 */
+	private final LatencyHistogram generation = new LatencyHistogram();
+
+	/**
+	 * Latencies of the view refreshes
+	 */
+	private final LatencyHistogram refresh = new LatencyHistogram();
+
+	/**
+	 * Constructs empty metrics (not registered)
+	 */
+	public InfectionMetrics() {
+		latencies = new EnumMap<>(InfectionType.class);
+		for (InfectionType type : InfectionType.values())
+			latencies.put(type, new LatencyHistogram());
+	}
+
+	/**
+	 * Gets the metrics of the application, registered with the platform MBean
+	 * server on first use (the metrics are still collected if JMX is not 
+	 * available)
+	 * @return the metrics
+	 */
+	public static InfectionMetrics instance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Registers the metrics and their latency histograms with an MBean server
+	 * @param server the MBean server
+	 * @throws JMException if the MBeans cannot be registered
+	 */
+	public void register(MBeanServer server) throws JMException {
+		server.registerMBean(this, 
+				new ObjectName(DOMAIN + ":type=InfectionMetrics"));
+		for (Map.Entry<InfectionType,LatencyHistogram> entry : 
+				latencies.entrySet())
+			server.registerMBean(entry.getValue(), new ObjectName(DOMAIN + 
+					":type=Latency,name=" + entry.getKey().name()));
+		server.registerMBean(generation, 
+				new ObjectName(DOMAIN + ":type=Latency,name=GENERATION"));
+		server.registerMBean(refresh, 
+				new ObjectName(DOMAIN + ":type=Latency,name=REFRESH"));
+	}
+
+	/**
+	 * Runs an infection and records its latency, the users and relations its
+	 * engines visited and the users it changed. The infection is given a 
+	 * counter of its own to pass to the engines it runs, so the work of all 
+	 * their threads is recorded and nothing else.
+	 * @param type the type of the infection
+	 * @param changes a counter of the version changes of the user base
+	 * @param infection the infection
+	 * @return the result of the infection
+	 */
+	public <T> T record(InfectionType type, LongSupplier changes, 
+			Function<TraversalCounter,T> infection) {
+		TraversalCounter counter = new TraversalCounter();
+		long changed = changes.getAsLong();
+		long start = System.nanoTime();
+		try {
+			return infection.apply(counter);
+		} finally {
+			latencies.get(type).record(System.nanoTime() - start);
+			infections.increment();
+			usersVisited.add(counter.visited());
+			edgesTraversed.add(counter.edgesTraversed());
+			usersChanged.add(changes.getAsLong() - changed);
+		}
+	}
+
+	/**
+	 * Gets the latencies of the infections of a type
+	 * @param type the type of the infections
+	 * @return the latency histogram
+	 */
+	public LatencyHistogram latency(InfectionType type) {
+		return latencies.get(type);
+	}
+
+	/**
+	 * Gets the latencies of the user-base generations
+	 * @return the latency histogram
+	 */
+	public LatencyHistogram generation() {
+		return generation;
+	}
+
+	/**
+	 * Gets the latencies of the view refreshes
+	 * @return the latency histogram
+	 */
+	public LatencyHistogram refresh() {
+		return refresh;
+	}
+
+	@Override
+	public long getInfections() {
+		return infections.sum();
+	}
+
+	@Override
+	public long getUsersVisited() {
+		return usersVisited.sum();
+	}
+
+	@Override
+	public long getEdgesTraversed() {
+		return edgesTraversed.sum();
+	}
+
+	@Override
+	public long getUsersChanged() {
+		return usersChanged.sum();
+	}
+
+	/**
+	 * Lazy holder of the metrics of the application
+	 */
+	private static class Holder {
+
+		/**
+		 * Metrics of the application
+		 */
+		private static final InfectionMetrics INSTANCE = create();
+
+		/**
+		 * Creates the metrics of the application and registers them
+		 * @return the metrics
+		 */
+		private static InfectionMetrics create() {
+			InfectionMetrics metrics = new InfectionMetrics();
+			try {
+				metrics.register(ManagementFactory.getPlatformMBeanServer());
+			} catch (JMException | SecurityException e) {
+				// keep collecting without JMX
+			}
+			return metrics;
+		}
+
+	}
+
+}
@@ -0,0 +1,48 @@
+/**
+ * Package for the infection implementations for the Khan Academy interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview;
+
+/**
+ * Management interface of the counters of the infections
+ */
+public interface InfectionMetricsMBean {
+
+	/**
+	 * Gets the number of infections run
+	 * @return the number of infections
+	 */
+	public long getInfections();
+
+	/**
+	 * Gets the number of users visited by the infections
+	 * @return the number of users
+	 */
+	public long getUsersVisited();
+
+	/**
+	 * Gets the number of coach-student relations scanned by the infections
+	 * @return the number of relations
+	 */
+	public long getEdgesTraversed();
+
+	/**
+	 * Gets the number of users whose version was changed by the infections
+	 * @return the number of users
+	 */
+	public long getUsersChanged();
+
+}
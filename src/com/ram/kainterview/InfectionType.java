@@ -20,7 +20,8 @@ package com.ram.kainterview;
  * Lists the various infection types
  * TOTAL = total infection
  * LIMITED = limited infection
- * STRICT = limited infection with an EXACT number of users
+ * STRICT = limited infection with an EXACT number of users (made up of whole
+ * connected components)
  */
 public enum InfectionType {
 	TOTAL("Total Infection"), LIMITED("Limited Infection"), 
@@ -20,7 +20,10 @@ import java.awt.BorderLayout;
 import java.awt.ComponentOrientation;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
-import java.util.List;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.swing.JButton;
 import javax.swing.JFrame;
@@ -49,6 +52,12 @@ public class InfectionViewImpl extends JFrame implements InfectionView {
 	 */
 	private static final double HEIGHT_FRACTION = 0.8;
 
+	/**
+	 * Maximum number of queued label updates applied per flush so that large
+	 * infections do not stall the viewer
+	 */
+	private static final int UPDATES_PER_FRAME = 4096;
+
 	/**
 	 * Window width
 	 */
@@ -88,6 +97,11 @@ public class InfectionViewImpl extends JFrame implements InfectionView {
 	 * Help button
 	 */
 	private JButton help;
+	
+	/**
+	 * Latest queued label of each node not yet applied to the graph
+	 */
+	private Map<Integer,Integer> pendingLabels;
 
 	public InfectionViewImpl(String title) {
 		setTitle(title);
@@ -99,6 +113,8 @@ public class InfectionViewImpl extends JFrame implements InfectionView {
 
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
+		pendingLabels = new LinkedHashMap<>();
+
 		initControls();
 		
 		initGraph(title);
@@ -176,23 +192,53 @@ public class InfectionViewImpl extends JFrame implements InfectionView {
 	}
 
 	@Override
-	public void addNode(String id, int label, List<String> toIds, 
-			List<String> fromIds) {
-		Node node = graph.addNode(id);
-		node.setAttribute("ui.label", label);
+	public void addNode(int id, int label, int[] toIds, int[] fromIds) {
+		String node = Integer.toString(id);
+		graph.addNode(node).setAttribute("ui.label", label);
 		
-		for (String s : toIds)
+		for (int to : toIds) {
+			String s = Integer.toString(to);
 			if (graph.getNode(s) != null)
-				graph.addEdge(s+id, s, id, true);
+				graph.addEdge(s+">"+node, s, node, true);
+		}
 		
-		for (String s : fromIds)
+		for (int from : fromIds) {
+			String s = Integer.toString(from);
 			if (graph.getNode(s) != null)
-				graph.addEdge(id+s, id, s, true);
+				graph.addEdge(node+">"+s, node, s, true);
+		}
+	}
+
+	@Override
+	public void updateNode(int id, int label) {
+		graph.getNode(Integer.toString(id)).setAttribute("ui.label", label);
+	}
+
+	@Override
+	public void queueUpdate(int id, int label) {
+		synchronized (pendingLabels) {
+			pendingLabels.put(id, label);
+		}
 	}
 
 	@Override
-	public void updateNode(String id, int label) {
-		graph.getNode(id).setAttribute("ui.label", label);
+	public void flushUpdates() {
+		long start = System.nanoTime();
+		Map<Integer,Integer> labels = new LinkedHashMap<>();
+		synchronized (pendingLabels) {
+			Iterator<Entry<Integer,Integer>> it = 
+					pendingLabels.entrySet().iterator();
+			while (it.hasNext() && labels.size() < UPDATES_PER_FRAME) {
+				Entry<Integer,Integer> entry = it.next();
+				labels.put(entry.getKey(), entry.getValue());
+				it.remove();
+			}
+		}
+		if (labels.isEmpty())
+			return;
+		for (Entry<Integer,Integer> entry : labels.entrySet())
+			updateNode(entry.getKey(), entry.getValue());
+		InfectionMetrics.instance().refresh().record(System.nanoTime() - start);
 	}
 
 }
@@ -0,0 +1,120 @@
+/**
+ * Package for the infection implementations for the Khan Academy interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations with one bucket per power of 2 nanoseconds, so 
+ * recording is a few atomic additions whatever the number of durations and
+ * percentiles are exact up to a factor of 2.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+	/**
+	 * Number of buckets (one per bit of a duration in nanoseconds)
+	 */
+	private static final int BUCKETS = 64;
+
+	/**
+	 * Number of durations recorded in each bucket
+	 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * Sum of the durations recorded in nanoseconds
+	 */
+	private final LongAdder total = new LongAdder();
+
+	/**
+	 * Longest duration recorded in nanoseconds
+	 */
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Records a duration
+	 * @param nanos the duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		nanos = Math.max(0, nanos);
+		buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+		total.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	@Override
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++)
+			count += buckets.get(i);
+		return count;
+	}
+
+	@Override
+	public double getMeanMillis() {
+		long count = getCount();
+		return count == 0 ? 0 : total.sum() / 1e6 / count;
+	}
+
+	@Override
+	public double getMaxMillis() {
+		return max.get() / 1e6;
+	}
+
+	@Override
+	public double getMedianMillis() {
+		return percentile(0.5);
+	}
+
+	@Override
+	public double getP99Millis() {
+		return percentile(0.99);
+	}
+
+	@Override
+	public long[] getHistogram() {
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] = buckets.get(i);
+		return counts;
+	}
+
+	/**
+	 * Gets a percentile of the durations recorded (the upper bound of the 
+	 * bucket that contains it, but no more than the longest duration)
+	 * @param fraction the fraction of the durations below the percentile
+	 * @return the percentile in milliseconds
+	 */
+	private double percentile(double fraction) {
+		long[] counts = getHistogram();
+		long count = 0;
+		for (long c : counts)
+			count += c;
+		if (count == 0)
+			return 0;
+		long rank = (long) Math.ceil(fraction * count);
+		long seen = 0;
+		int bucket = 0;
+		while (bucket < BUCKETS - 1 && (seen += counts[bucket]) < rank)
+			bucket++;
+		long bound = bucket >= 62 ? Long.MAX_VALUE : 1L << (bucket + 1);
+		return Math.min(bound, max.get()) / 1e6;
+	}
+
+}
@@ -0,0 +1,63 @@
+/**
+ * Package for the infection implementations for the Khan Academy interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview;
+
+/**
+ * Management interface of a latency histogram
+ */
+public interface LatencyHistogramMBean {
+
+	/**
+	 * Gets the number of durations recorded
+	 * @return the number of durations
+	 */
+	public long getCount();
+
+	/**
+	 * Gets the mean of the durations recorded
+	 * @return the mean in milliseconds
+	 */
+	public double getMeanMillis();
+
+	/**
+	 * Gets the longest duration recorded
+	 * @return the duration in milliseconds
+	 */
+	public double getMaxMillis();
+
+	/**
+	 * Gets the median of the durations recorded (rounded up to a power of 2 
+	 * nanoseconds)
+	 * @return the median in milliseconds
+	 */
+	public double getMedianMillis();
+
+	/**
+	 * Gets the 99th percentile of the durations recorded (rounded up to a 
+	 * power of 2 nanoseconds)
+	 * @return the percentile in milliseconds
+	 */
+	public double getP99Millis();
+
+	/**
+	 * Gets the number of durations recorded in each bucket (bucket i counts 
+	 * the durations from 2^i to 2^(i+1) nanoseconds)
+	 * @return the counts of the buckets
+	 */
+	public long[] getHistogram();
+
+}
@@ -16,10 +16,17 @@
  */
 package com.ram.kainterview;
 
-import java.util.List;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
-import com.ram.kainterview.user.User;
+import com.ram.kainterview.user.EdgeListImporter;
+import com.ram.kainterview.user.Snapshot;
 import com.ram.kainterview.user.UserGenerator;
+import com.ram.kainterview.user.UserGraph;
+import com.ram.kainterview.user.VersionLog;
 
 /**
  * Initializes the application, reads user arguments, and connects the view and
@@ -28,7 +35,12 @@ import com.ram.kainterview.user.UserGenerator;
 public class Main {
 
 	private static final String USAGE = "Usage: java -jar <JAR> <MINIMUM_USERS>"
-			+ " <MAXIMUM_STUDENTS> <LEVELS>";
+			+ " <MAXIMUM_STUDENTS> <LEVELS> [<OPTIONS>]\n"
+			+ "       java -jar <JAR> --load <SNAPSHOT> [<OPTIONS>]\n"
+			+ "       java -jar <JAR> --import <EDGE_LIST> [--header] "
+			+ "[<OPTIONS>]\n"
+			+ "<OPTIONS>: [--save <SNAPSHOT>] [--log <LOG>] "
+			+ "[--headless <SCRIPT> | --serve <PORT>]";
 	
 	/**
 	 * Prints the usage info (i.e. the runtime arguments)
@@ -50,6 +62,33 @@ public class Main {
 				+ "per user (integer)");
 		System.out.println("<LEVELS>: the levels of coach-student relationships"
 				+ " to generate (integer)");
+		System.out.println("--save <SNAPSHOT>: writes the user base to a "
+				+ "binary snapshot file");
+		System.out.println("--load <SNAPSHOT>: opens a user base from a binary "
+				+ "snapshot file instead of generating one");
+		System.out.println("--import <EDGE_LIST>: reads a user base from a CSV"
+				+ " or TSV file of coach,student[,version] lines (--header skips"
+				+ " the first line)");
+		System.out.println("--log <LOG>: replays the version changes of a "
+				+ "write-ahead log into the user base and logs the changes of "
+				+ "each infection to it (with --save, the log is emptied once "
+				+ "the snapshot is written and must then be used with it)");
+		System.out.println("--headless <SCRIPT>: runs a script of infections "
+				+ "without the view (\"-\" reads it from the standard input), one"
+				+ " per line:");
+		System.out.println("    total <USER> [<VERSION>]");
+		System.out.println("    limited <USER> <USERS> [<VERSION>]");
+		System.out.println("    auto <USERS>");
+		System.out.println("    strict <USERS>");
+		System.out.println("    undo [<ROLLOUTS>]");
+		System.out.println("--serve <PORT>: answers version lookups and "
+				+ "infection commands over HTTP on localhost instead of showing"
+				+ " the view:");
+		System.out.println("    GET /version?user=<USER>");
+		System.out.println("    GET /versions?users=<USER>,<USER>,... (or "
+				+ "POST /versions with the users in the body)");
+		System.out.println("    POST /infect (a headless command in the "
+				+ "body)");
 	}
 	
 	/**
@@ -58,38 +97,139 @@ public class Main {
 	 * @param args the runtime arguments
 	 */
 	public static void main(String[] args) {
-		int minUsers;
-		int maxStudents;
-		int levels;
+		int minUsers = 0;
+		int maxStudents = 0;
+		int levels = 0;
+		String load = null;     // snapshot to open
+		String edgeList = null; // edge list to import
+		boolean header = false;
+		String save = null;     // snapshot to write
+		String logPath = null;  // write-ahead log of the versions
+		String script = null;   // script to run without the view
+		int port = -1;          // port of the HTTP service
 		
 		try {
+			int i;
 			if (args[0].equals("--help") && args.length == 1) {
 				printHelp();
 				return;
+			} else if (args[0].equals("--load")) {
+				load = args[1];
+				i = 2;
+			} else if (args[0].equals("--import")) {
+				edgeList = args[1];
+				header = args.length > 2 && args[2].equals("--header");
+				i = header ? 3 : 2;
 			} else {
 				minUsers = Integer.parseInt(args[0]);
 				maxStudents = Integer.parseInt(args[1]);
 				levels = Integer.parseInt(args[2]);
+				i = 3;
+			}
+			for (; i < args.length; i += 2) {
+				if (args[i].equals("--save") && save == null)
+					save = args[i+1];
+				else if (args[i].equals("--log") && logPath == null)
+					logPath = args[i+1];
+				else if (args[i].equals("--headless") && script == null && 
+						port < 0)
+					script = args[i+1];
+				else if (args[i].equals("--serve") && port < 0 && 
+						script == null)
+					port = Integer.parseInt(args[i+1]);
+				else
+					throw new IndexOutOfBoundsException();
 			}
 		} catch (IndexOutOfBoundsException | NumberFormatException e) {
 			printUsage();
 			return;
 		}
 		
-		InfectionView view = new InfectionViewImpl("Infection");
-		
-		List<User> users;
+		UserGraph users;
+		VersionLog log = null;
+		long start = System.nanoTime();
 		try {
-			users = UserGenerator.generateUsers(minUsers, maxStudents, levels);
+			if (load != null)
+				users = Snapshot.read(Paths.get(load));
+			else if (edgeList != null)
+				users = EdgeListImporter.read(Paths.get(edgeList), header);
+			else {
+				users = UserGenerator.generateGraph(minUsers, maxStudents, 
+						levels);
+				InfectionMetrics.instance().generation().record(
+						System.nanoTime() - start);
+			}
+			if (logPath != null)
+				log = VersionLog.open(users, Paths.get(logPath));
+			if (save != null && log != null)
+				log.checkpoint(Paths.get(save));
+			else if (save != null)
+				Snapshot.write(users, Paths.get(save));
 		} catch (IllegalArgumentException e) {
 			System.out.println(e.getMessage());
 			System.out.println();
 			printUsage();
 			return;
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+			return;
 		}
 		
-		InfectionController controller = new InfectionControllerImpl(users);
+		if (script != null) {
+			System.out.printf("%d users and %d relations ready in %.3f ms%n", 
+					users.size(), users.relations(), 
+					(System.nanoTime() - start) / 1e6);
+			runHeadless(users, log, script);
+			return;
+		}
+		
+		if (port >= 0) {
+			serve(users, log, port);
+			return;
+		}
+		
+		InfectionView view = new InfectionViewImpl("Infection");
+		InfectionController controller = new InfectionControllerImpl(users, 
+				log);
 		view.initController(controller);
 	}
 	
+	/**
+	 * Starts the HTTP service of the user base (it runs until the process is
+	 * stopped)
+	 * @param users the user base
+	 * @param log the write-ahead log of the user base (may be null)
+	 * @param port the port
+	 */
+	private static void serve(UserGraph users, VersionLog log, int port) {
+		try {
+			VersionServer server = new VersionServer(users, port, log);
+			server.start();
+			System.out.println("Serving on http://localhost:" + 
+					server.port());
+		} catch (IllegalArgumentException | IOException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Runs a script of infections without the view
+	 * @param users the user base
+	 * @param log the write-ahead log of the user base (may be null)
+	 * @param script the path of the script ("-" for the standard input)
+	 */
+	private static void runHeadless(UserGraph users, VersionLog log, 
+			String script) {
+		HeadlessRunner runner = new HeadlessRunner(users, System.out, log);
+		try (BufferedReader reader = script.equals("-") ? 
+				new BufferedReader(new InputStreamReader(System.in)) : 
+				Files.newBufferedReader(Paths.get(script))) {
+			runner.run(reader);
+			if (log != null)
+				log.close();
+		} catch (IllegalArgumentException | IOException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+	
 }
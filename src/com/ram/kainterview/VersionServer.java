@@ -0,0 +1,360 @@
+/**
+ * Package for the infection implementations for the Khan Academy interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.ram.kainterview.user.UserGraph;
+import com.ram.kainterview.user.VersionLog;
+import com.ram.kainterview.user.VersionPublisher;
+import com.ram.kainterview.user.VersionSnapshot;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP service answering version lookups and running infections.
+ * The service listens on the loopback address only and answers in plain 
+ * text:
+ * GET /version?user=&lt;USER&gt; (the version of a user)
+ * GET /versions?users=&lt;USER&gt;,&lt;USER&gt;,... or POST /versions with 
+ * the users separated by whitespace or commas (one version per line)
+ * POST /infect with a command of a headless script (see 
+ * {@link HeadlessRunner}) as the body
+ * where a user is given by its external id if the user base has any (or its
+ * id otherwise). Lookups are answered from the last published 
+ * {@link VersionSnapshot} without any lock, so they never wait for an 
+ * infection and never see a partial one. Requests are handled on virtual 
+ * threads when the Java runtime has them, and on a pool of threads 
+ * otherwise, but the infections run one at a time on a single platform 
+ * thread (they are serialized anyway and reuse its traversal engines), 
+ * which the request waits for. Unexpected failures (including a write-ahead 
+ * log that cannot be written) are answered with status 500.
+ */
+public class VersionServer implements Closeable {
+
+	/**
+	 * Maximum number of pending connections
+	 */
+	private static final int BACKLOG = 1024;
+
+	/**
+	 * Maximum size of a request body in bytes
+	 */
+	private static final int MAX_BODY = 1 << 20;
+
+	/**
+	 * Number of threads handling requests when there are no virtual threads
+	 */
+	private static final int POOL_SIZE = 64;
+
+	/**
+	 * User base
+	 */
+	private final UserGraph graph;
+
+	/**
+	 * Publisher of the versions looked up
+	 */
+	private final VersionPublisher publisher;
+
+	/**
+	 * Runner of the infection commands
+	 */
+	private final HeadlessRunner runner;
+
+	/**
+	 * HTTP server
+	 */
+	private final HttpServer server;
+
+	/**
+	 * Threads handling the requests
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Thread running the infections
+	 */
+	private final ExecutorService infections;
+
+	/**
+	 * Constructs a service for a user base on a local port (not started)
+	 * @param graph the user base
+	 * @param port the port (0 for any free port)
+	 * @param log the write-ahead log of the user base (may be null)
+	 * @throws IOException if the port cannot be bound
+	 */
+	public VersionServer(UserGraph graph, int port, VersionLog log) 
+			throws IOException {
+		this.graph = graph;
+		server = HttpServer.create(new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), port), BACKLOG);
+		publisher = new VersionPublisher(graph);
+		runner = new HeadlessRunner(graph, System.out, log);
+		executor = newExecutor();
+		infections = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "version-server-infect");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.createContext("/version", guard(this::version));
+		server.createContext("/versions", guard(this::versions));
+		server.createContext("/infect", guard(this::infect));
+	}
+
+	/**
+	 * Starts answering requests
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Gets the port the service listens on
+	 * @return the port
+	 */
+	public int port() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops the service and its observers of the user base
+	 */
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdown();
+		infections.shutdown();
+		runner.close();
+		graph.removeVersionListener(publisher);
+	}
+
+	/**
+	 * Wraps a handler so that an unexpected exception is answered with 
+	 * status 500 instead of a dropped connection
+	 * @param handler the handler
+	 * @return the guarded handler
+	 */
+	private static HttpHandler guard(HttpHandler handler) {
+		return exchange -> {
+			try {
+				handler.handle(exchange);
+			} catch (RuntimeException e) {
+				send(exchange, 500, "Internal error: " + e);
+			}
+		};
+	}
+
+	/**
+	 * Answers the version of a single user
+	 * @param exchange the request
+	 * @throws IOException if the answer cannot be sent
+	 */
+	private void version(HttpExchange exchange) throws IOException {
+		if (!exchange.getRequestMethod().equals("GET")) {
+			send(exchange, 405, "Method not allowed");
+			return;
+		}
+		String user = parameter(exchange, "user");
+		if (user == null) {
+			send(exchange, 400, "Missing parameter: user");
+			return;
+		}
+		try {
+			int index = HeadlessRunner.index(graph, user);
+			send(exchange, 200, 
+					Integer.toString(publisher.current().version(index)));
+		} catch (IllegalArgumentException e) {
+			send(exchange, 404, e.getMessage());
+		}
+	}
+
+	/**
+	 * Answers the versions of several users from one snapshot
+	 * @param exchange the request
+	 * @throws IOException if the request cannot be read or the answer sent
+	 */
+	private void versions(HttpExchange exchange) throws IOException {
+		String users;
+		switch (exchange.getRequestMethod()) {
+		case "GET":
+			users = parameter(exchange, "users");
+			break;
+		case "POST":
+			users = body(exchange);
+			if (users == null) {
+				send(exchange, 413, "Request too large");
+				return;
+			}
+			break;
+		default:
+			send(exchange, 405, "Method not allowed");
+			return;
+		}
+		if (users == null) {
+			send(exchange, 400, "Missing parameter: users");
+			return;
+		}
+
+		VersionSnapshot snapshot = publisher.current();
+		StringBuilder answer = new StringBuilder();
+		try {
+			for (String user : users.trim().split("[\\s,]+")) {
+				if (user.isEmpty())
+					continue;
+				answer.append(snapshot.version(
+						HeadlessRunner.index(graph, user))).append('\n');
+			}
+		} catch (IllegalArgumentException e) {
+			send(exchange, 404, e.getMessage());
+			return;
+		}
+		send(exchange, 200, answer.toString());
+	}
+
+	/**
+	 * Runs an infection command
+	 * @param exchange the request
+	 * @throws IOException if the request cannot be read or the answer sent
+	 */
+	private void infect(HttpExchange exchange) throws IOException {
+		if (!exchange.getRequestMethod().equals("POST")) {
+			send(exchange, 405, "Method not allowed");
+			return;
+		}
+		String command = body(exchange);
+		if (command == null) {
+			send(exchange, 413, "Request too large");
+			return;
+		}
+		int status = 200;
+		String answer;
+		try {
+			answer = infections.submit(() -> runner.execute(command)).get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IllegalArgumentException) {
+				status = 400;
+				answer = cause.getMessage();
+			} else if (cause instanceof IOException) {
+				status = 500;
+				answer = "Write-ahead log error: " + cause;
+			} else {
+				status = 500;
+				answer = "Internal error: " + cause;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			status = 503;
+			answer = "Interrupted";
+		}
+		send(exchange, status, answer);
+	}
+
+	/**
+	 * Gets a parameter of the query of a request
+	 * @param exchange the request
+	 * @param name the name of the parameter
+	 * @return the decoded value, or null if the parameter is absent
+	 * @throws UnsupportedEncodingException never (UTF-8 is always supported)
+	 */
+	private static String parameter(HttpExchange exchange, String name) 
+			throws UnsupportedEncodingException {
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query == null)
+			return null;
+		for (String pair : query.split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals > 0 && pair.substring(0, equals).equals(name))
+				return URLDecoder.decode(pair.substring(equals + 1), 
+						"UTF-8");
+		}
+		return null;
+	}
+
+	/**
+	 * Reads the body of a request
+	 * @param exchange the request
+	 * @return the body, or null if it is too large
+	 * @throws IOException if the body cannot be read
+	 */
+	private static String body(HttpExchange exchange) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		try (InputStream in = exchange.getRequestBody()) {
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				if (body.size() + read > MAX_BODY)
+					return null;
+				body.write(buffer, 0, read);
+			}
+		}
+		return new String(body.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Sends a plain text answer
+	 * @param exchange the request
+	 * @param status the HTTP status code
+	 * @param text the answer
+	 * @throws IOException if the answer cannot be sent
+	 */
+	private static void send(HttpExchange exchange, int status, String text) 
+			throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", 
+				"text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Creates the threads handling the requests: a virtual thread per request
+	 * when the Java runtime has virtual threads (looked up reflectively, as 
+	 * the application is built for Java 8), and a pool of threads otherwise
+	 * @return the executor
+	 */
+	private static ExecutorService newExecutor() {
+		try {
+			return (ExecutorService) Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(POOL_SIZE, runnable -> {
+				Thread thread = new Thread(runnable, "version-server");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+}
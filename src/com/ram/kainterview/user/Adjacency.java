@@ -0,0 +1,242 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.util.Arrays;
+
+/**
+ * Adjacency of the users in one direction (students of each coach or coaches 
+ * of each student) stored in a single array where the targets of user u are 
+ * the range [start(u), end(u)).
+ * The array starts out in compressed sparse row form. A user whose range 
+ * overflows on insertion is moved to the end of the array with spare 
+ * capacity, and the array is compacted back into CSR form once the abandoned 
+ * ranges outweigh the live ones.
+ */
+class Adjacency {
+
+	/**
+	 * Minimum capacity of a range moved to the end of the array
+	 */
+	private static final int MIN_CAPACITY = 4;
+
+	/**
+	 * Start of the range of each user
+	 */
+	private final int[] start;
+
+	/**
+	 * Number of targets of each user
+	 */
+	private final int[] count;
+
+	/**
+	 * Capacity of the range of each user (null until the first insertion, 
+	 * when every capacity equals the count)
+	 */
+	private int[] capacity;
+
+	/**
+	 * Targets of all users
+	 */
+	private int[] targets;
+
+	/**
+	 * Number of slots of the targets array in use (including abandoned ones)
+	 */
+	private int used;
+
+	/**
+	 * Number of live targets
+	 */
+	private int relations;
+
+	/**
+	 * Builds the adjacency in CSR form from a list of relations
+	 * @param size the number of users
+	 * @param owners the user owning each relation
+	 * @param ends the target of each relation
+	 * @param relations the number of relations
+	 */
+	Adjacency(int size, int[] owners, int[] ends, int relations) {
+		start = new int[size];
+		count = new int[size];
+		targets = new int[relations];
+		this.relations = relations;
+		used = relations;
+
+		// count the degree of every user
+		for (int i = 0; i < relations; i++)
+			count[owners[i]]++;
+		for (int u = 1; u < size; u++)
+			start[u] = start[u-1] + count[u-1];
+
+		// scatter the relations (stable, so insertion order is preserved)
+		int[] fill = Arrays.copyOf(start, size);
+		for (int i = 0; i < relations; i++)
+			targets[fill[owners[i]]++] = ends[i];
+	}
+
+	/**
+	 * Wraps arrays already in CSR form (the targets of user u are the count[u]
+	 * targets following those of the users before it)
+	 * @param count the number of targets of each user
+	 * @param targets the targets of all users
+	 */
+	Adjacency(int[] count, int[] targets) {
+		this.count = count;
+		this.targets = targets;
+		start = new int[count.length];
+		relations = targets.length;
+		used = relations;
+		for (int u = 1; u < count.length; u++)
+			start[u] = start[u-1] + count[u-1];
+	}
+
+	/**
+	 * Gets the position of the first target of the specified user
+	 * @param user the index of the user
+	 * @return the position
+	 */
+	int start(int user) {
+		return start[user];
+	}
+
+	/**
+	 * Gets the position after the last target of the specified user
+	 * @param user the index of the user
+	 * @return the position
+	 */
+	int end(int user) {
+		return start[user] + count[user];
+	}
+
+	/**
+	 * Gets the target stored at the specified position
+	 * @param position the position
+	 * @return the index of the target
+	 */
+	int at(int position) {
+		return targets[position];
+	}
+
+	/**
+	 * Gets the number of targets of the specified user
+	 * @param user the index of the user
+	 * @return the number of targets
+	 */
+	int count(int user) {
+		return count[user];
+	}
+
+	/**
+	 * Gets the total number of live relations
+	 * @return the number of relations
+	 */
+	int relations() {
+		return relations;
+	}
+
+	/**
+	 * Checks whether the specified user has the given target
+	 * @param user the index of the user
+	 * @param target the index of the target
+	 * @return true if the relation exists, false otherwise
+	 */
+	boolean contains(int user, int target) {
+		for (int i = start(user); i < end(user); i++)
+			if (targets[i] == target)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Appends a target to the specified user
+	 * @param user the index of the user
+	 * @param target the index of the target
+	 */
+	void add(int user, int target) {
+		if (capacity == null)
+			capacity = count.clone();
+
+		if (count[user] == capacity[user]) {
+			// move the range to the end of the array with spare capacity
+			int grown = Math.max(MIN_CAPACITY, capacity[user]*2);
+			if (used + grown > targets.length)
+				targets = Arrays.copyOf(targets, 
+						Math.max(used + grown, targets.length*2));
+			System.arraycopy(targets, start[user], targets, used, count[user]);
+			start[user] = used;
+			capacity[user] = grown;
+			used += grown;
+		}
+		targets[start[user] + count[user]++] = target;
+		relations++;
+
+		if (used > 2L*relations + MIN_CAPACITY*start.length)
+			compact();
+	}
+
+	/**
+	 * Removes a target from the specified user (keeps the order of the 
+	 * remaining targets)
+	 * @param user the index of the user
+	 * @param target the index of the target
+	 * @return true if the relation was removed, false if it did not exist
+	 */
+	boolean remove(int user, int target) {
+		for (int i = start(user); i < end(user); i++) {
+			if (targets[i] == target) {
+				System.arraycopy(targets, i + 1, targets, i, end(user) - i - 1);
+				count[user]--;
+				relations--;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Rewrites the targets array in CSR form without abandoned ranges
+	 */
+	private void compact() {
+		int[] compacted = new int[relations];
+		int position = 0;
+		for (int u = 0; u < start.length; u++) {
+			System.arraycopy(targets, start[u], compacted, position, count[u]);
+			start[u] = position;
+			position += count[u];
+		}
+		targets = compacted;
+		used = relations;
+		capacity = null;
+	}
+
+	/**
+	 * Hashes a relation (summing the hashes of relations gives a fingerprint
+	 * that does not depend on their order)
+	 * @param coach the index of the coach
+	 * @param student the index of the student
+	 * @return the hash
+	 */
+	static long hash(int coach, int student) {
+		long h = ((long) coach << 32 | student) * 0x9E3779B97F4A7C15L;
+		return h ^ h >>> 29;
+	}
+
+}
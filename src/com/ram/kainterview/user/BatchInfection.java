@@ -0,0 +1,206 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Total infection of many seed users at once (e.g. moving every component 
+ * containing a list of users to a new version).
+ * Seeds are grouped by connected component so each component is infected 
+ * once, as a whole like {@link User#totalInfect} does (whatever the versions
+ * of the users in between), and independent components are infected in 
+ * parallel on a {@link ForkJoinPool}. Relation changes wait for the 
+ * infection to finish, and each component is locked while it is infected.
+ * The observers see the infection of each component as an infection of its
+ * own.
+ */
+public class BatchInfection {
+
+	/**
+	 * Minimum number of users infected by a single task (smaller ranges of 
+	 * components are not split further; counting the changes of a component
+	 * whose users override its version takes a traversal of the component)
+	 */
+	private static final long GRAIN = 1 << 13;
+
+	// prevents instantiation
+	private BatchInfection() { }
+
+	/**
+	 * Performs total infection from all of the given users on the common pool
+	 * @param graph the user base
+	 * @param seeds the indices of the users to infect from
+	 * @param version the new version number
+	 * @return the number of users whose version changed
+	 */
+	public static long totalInfect(UserGraph graph, int[] seeds, int version) {
+		return totalInfect(graph, seeds, version, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Performs total infection from all of the given users on the given pool
+	 * @param graph the user base
+	 * @param seeds the indices of the users to infect from
+	 * @param version the new version number
+	 * @param pool the pool to run the infection on
+	 * @return the number of users whose version changed
+	 */
+	public static long totalInfect(UserGraph graph, int[] seeds, int version, 
+			ForkJoinPool pool) {
+		return totalInfect(graph, seeds, version, pool, null);
+	}
+
+	/**
+	 * Performs total infection from all of the given users on the given pool
+	 * and counts its work (every user of an infected component is visited)
+	 * @param graph the user base
+	 * @param seeds the indices of the users to infect from
+	 * @param version the new version number
+	 * @param pool the pool to run the infection on
+	 * @param counter the counter of the work of the infection (or null)
+	 * @return the number of users whose version changed
+	 */
+	public static long totalInfect(UserGraph graph, int[] seeds, int version, 
+			ForkJoinPool pool, TraversalCounter counter) {
+		return graph.shared(
+				() -> infect(graph, seeds, version, pool, counter));
+	}
+
+	/**
+	 * Performs total infection from all of the given users on the given pool
+	 * (the caller holds the read lock of the user base)
+	 * @param graph the user base
+	 * @param seeds the indices of the users to infect from
+	 * @param version the new version number
+	 * @param pool the pool to run the infection on
+	 * @param counter the counter of the work of the infection (or null)
+	 * @return the number of users whose version changed
+	 */
+	private static long infect(UserGraph graph, int[] seeds, int version, 
+			ForkJoinPool pool, TraversalCounter counter) {
+		ComponentIndex components = graph.components();
+
+		// keep the first seed of every component
+		boolean[] seen = new boolean[components.bound()];
+		int[] starts = new int[Math.min(seeds.length, components.count())];
+		int count = 0;
+		for (int seed : seeds) {
+			int c = components.componentOf(seed);
+			if (!seen[c]) {
+				seen[c] = true;
+				starts[count++] = seed;
+			}
+		}
+		starts = Arrays.copyOf(starts, count);
+
+		// prefix sums of the component sizes to split the work evenly
+		long[] work = new long[count+1];
+		for (int i = 0; i < count; i++)
+			work[i+1] = work[i] + 
+				components.size(components.componentOf(starts[i]));
+
+		TraversalCounter.add(counter, work[count], 0);
+		return pool.invoke(new InfectTask(graph, starts, work, version, 0, 
+				count));
+	}
+
+	/**
+	 * Task infecting a range of components
+	 */
+	private static class InfectTask extends RecursiveTask<Long> {
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * User base
+		 */
+		private final UserGraph graph;
+
+		/**
+		 * One user of each component to infect
+		 */
+		private final int[] starts;
+
+		/**
+		 * Prefix sums of the sizes of the components
+		 */
+		private final long[] work;
+
+		/**
+		 * New version number
+		 */
+		private final int version;
+
+		/**
+		 * Range of components of this task
+		 */
+		private final int from, to;
+
+		private InfectTask(UserGraph graph, int[] starts, long[] work, 
+				int version, int from, int to) {
+			this.graph = graph;
+			this.starts = starts;
+			this.work = work;
+			this.version = version;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Long compute() {
+			if (to - from > 1 && work[to] - work[from] > GRAIN) {
+				// split where half of the users of the range are infected
+				long half = (work[from] + work[to]) / 2;
+				int mid = Arrays.binarySearch(work, from + 1, to, half);
+				if (mid < 0)
+					mid = -mid - 1;
+				mid = Math.max(from + 1, Math.min(to - 1, mid));
+
+				InfectTask left = new InfectTask(graph, starts, work, version, 
+						from, mid);
+				InfectTask right = new InfectTask(graph, starts, work, version,
+						mid, to);
+				left.fork();
+				return right.compute() + left.join();
+			}
+
+			// each component is an infection of its own on this thread
+			long changed = 0;
+			for (int i = from; i < to; i++) {
+				Lock stripe = graph.stripe(starts[i]);
+				stripe.lock();
+				try {
+					graph.infectionStarted();
+					try {
+						changed += graph.setComponentVersion(starts[i], 
+								version, true);
+					} finally {
+						graph.infectionFinished();
+					}
+				} finally {
+					stripe.unlock();
+				}
+			}
+			return changed;
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.util.Arrays;
+
+/**
+ * Change log recording which users changed version since it was last drained 
+ * (each user is recorded once no matter how often its version changed)
+ */
+public class ChangeLog implements VersionListener {
+
+	/**
+	 * Users recorded so far
+	 */
+	private final long[] recorded;
+
+	/**
+	 * Users changed since the last drain in the order of their first change
+	 */
+	private int[] changed;
+
+	/**
+	 * Number of users changed since the last drain
+	 */
+	private int size;
+
+	/**
+	 * Constructs an empty change log
+	 * @param users the number of users in the user base
+	 */
+	public ChangeLog(int users) {
+		recorded = new long[(users + 63) >>> 6];
+		changed = new int[16];
+	}
+
+	@Override
+	public synchronized void versionChanged(int user, int oldVersion, 
+			int newVersion) {
+		long bit = 1L << user;
+		if ((recorded[user >>> 6] & bit) != 0)
+			return;
+		recorded[user >>> 6] |= bit;
+		if (size == changed.length)
+			changed = Arrays.copyOf(changed, size*2);
+		changed[size++] = user;
+	}
+
+	/**
+	 * Gets the number of users changed since the last drain
+	 * @return the number of users
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Removes and returns the users changed since the last drain
+	 * @return the indices of the users
+	 */
+	public synchronized int[] drain() {
+		int[] users = Arrays.copyOf(changed, size);
+		for (int user : users)
+			recorded[user >>> 6] = 0;
+		size = 0;
+		return users;
+	}
+
+}
@@ -0,0 +1,199 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.util.Arrays;
+
+/**
+ * Change of every user connected to a user to one version at once (total 
+ * infection), as told to the observers before the versions change.
+ * The event is built in constant time: when every user of the component is 
+ * on the version of the component (the usual case), the number of users that
+ * change is known without a traversal. The individual changes are only 
+ * computed when an observer asks for them, by a single traversal of the 
+ * component shared by all the observers.
+ */
+public final class ComponentChange {
+
+	/**
+	 * User base
+	 */
+	private final UserGraph graph;
+
+	/**
+	 * User the change starts from
+	 */
+	private final int user;
+
+	/**
+	 * Component of the user
+	 */
+	private final int component;
+
+	/**
+	 * Number of users in the component
+	 */
+	private final int size;
+
+	/**
+	 * Version of the component before the change
+	 */
+	private final int oldVersion;
+
+	/**
+	 * Whether every user of the component is on the old version
+	 */
+	private final boolean uniform;
+
+	/**
+	 * New version of the users
+	 */
+	private final int version;
+
+	/**
+	 * Users whose version changes and their previous versions (null until 
+	 * an observer asks for them)
+	 */
+	private int[] users, oldVersions;
+
+	/**
+	 * Number of users whose version changes (-1 until known)
+	 */
+	private int changed = -1;
+
+	/**
+	 * Constructs the change of a component
+	 * @param graph the user base
+	 * @param user the index of the user the change starts from
+	 * @param component the component of the user
+	 * @param size the number of users in the component
+	 * @param oldVersion the version of the component before the change
+	 * @param uniform whether every user of the component is on the old 
+	 * version
+	 * @param version the new version number
+	 */
+	ComponentChange(UserGraph graph, int user, int component, int size, 
+			int oldVersion, boolean uniform, int version) {
+		this.graph = graph;
+		this.user = user;
+		this.component = component;
+		this.size = size;
+		this.oldVersion = oldVersion;
+		this.uniform = uniform;
+		this.version = version;
+		if (uniform)
+			changed = oldVersion == version ? 0 : size;
+	}
+
+	/**
+	 * Gets the user the change starts from
+	 * @return the index of the user
+	 */
+	public int user() {
+		return user;
+	}
+
+	/**
+	 * Gets the component that changes (valid until the relations change)
+	 * @return the component
+	 */
+	public int component() {
+		return component;
+	}
+
+	/**
+	 * Gets the number of users in the component
+	 * @return the number of users
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks whether every user of the component is on the same version 
+	 * before the change
+	 * @return true if the users share {@link #oldVersion()}, false otherwise
+	 */
+	public boolean uniform() {
+		return uniform;
+	}
+
+	/**
+	 * Gets the version of the component before the change (the version of 
+	 * every user if the component is uniform)
+	 * @return the version number
+	 */
+	public int oldVersion() {
+		return oldVersion;
+	}
+
+	/**
+	 * Gets the new version of the users
+	 * @return the version number
+	 */
+	public int version() {
+		return version;
+	}
+
+	/**
+	 * Gets the number of users whose version changes (in constant time if 
+	 * the component is uniform)
+	 * @return the number of users
+	 */
+	public int changed() {
+		if (changed < 0)
+			collect();
+		return changed;
+	}
+
+	/**
+	 * Reports each user whose version changes to an observer
+	 * @param listener the observer
+	 */
+	public void forEach(VersionListener listener) {
+		if (changed() == 0)
+			return;
+		if (users == null)
+			collect();
+		for (int i = 0; i < changed; i++)
+			listener.versionChanged(users[i], oldVersions[i], version);
+	}
+
+	/**
+	 * Traverses the component once to collect the users whose version 
+	 * changes
+	 */
+	private void collect() {
+		users = new int[uniform ? size : 16];
+		oldVersions = new int[users.length];
+		changed = 0;
+		graph.traverse(traversal -> traversal.forEachConnected(user, u -> {
+			int old = graph.version(u);
+			if (old == version)
+				return;
+			if (changed == users.length) {
+				users = Arrays.copyOf(users, changed*2);
+				oldVersions = Arrays.copyOf(oldVersions, changed*2);
+			}
+			users[changed] = u;
+			oldVersions[changed] = old;
+			changed++;
+		}));
+	}
+
+}
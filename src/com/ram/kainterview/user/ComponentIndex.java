@@ -0,0 +1,571 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.util.Arrays;
+
+/**
+ * Index of the connected components of the user base (users connected as 
+ * coaches or students, regardless of direction).
+ * The index is built once with union-find and then flattened so that the 
+ * component of a user, the size of a component and a component of a given 
+ * size are all answered in O(1). Sets of whole components with an exact total
+ * size are found with a word-parallel subset-sum over the component sizes.
+ * The index is maintained incrementally as relations are added (the smaller 
+ * component is relabelled into the larger one) and removed (two searches 
+ * from the endpoints are interleaved and the side that is exhausted first, 
+ * i.e. the smaller side, is split off), so each change costs time 
+ * proportional to the smaller side rather than a full rebuild.
+ * Component ids lie in [0, bound()); ids of components that were merged away
+ * have size 0 until they are reused.
+ */
+public class ComponentIndex {
+
+	/**
+	 * User base whose components are indexed
+	 */
+	private final UserGraph graph;
+
+	/**
+	 * Component of each user (indexed by user)
+	 */
+	private final int[] componentOf;
+
+	/**
+	 * Number of users in each component or 0 if the id is unused (indexed by 
+	 * component)
+	 */
+	private int[] sizes;
+
+	/**
+	 * Some user of each component to start infections from (indexed by 
+	 * component)
+	 */
+	private int[] representatives;
+
+	/**
+	 * First component of each size or -1 if there is none (indexed by size)
+	 */
+	private final int[] firstOfSize;
+
+	/**
+	 * Next component with the same size or -1 if there is none (indexed by 
+	 * component)
+	 */
+	private int[] nextOfSize;
+
+	/**
+	 * Previous component with the same size or -1 if there is none (indexed 
+	 * by component)
+	 */
+	private int[] prevOfSize;
+
+	/**
+	 * Number of components
+	 */
+	private int count;
+
+	/**
+	 * Upper bound (exclusive) of the component ids in use
+	 */
+	private int bound;
+
+	/**
+	 * Component ids that were merged away and can be reused
+	 */
+	private final IntDeque freeIds;
+
+	/**
+	 * Search marks of the users for splitting components
+	 */
+	private int[] marks;
+
+	/**
+	 * Epoch of the search marks (a user was reached from the first endpoint 
+	 * iff its mark equals the epoch and from the second iff it equals the 
+	 * epoch + 1)
+	 */
+	private int epoch;
+
+	/**
+	 * Reusable work deques for the searches
+	 */
+	private final IntDeque first, second;
+
+	/**
+	 * Versions stored per component that follow the relabelling (null if the
+	 * versions are not stored with this index)
+	 */
+	private VersionStore store;
+
+	/**
+	 * Builds the component index of the given user base
+	 * @param graph the user base
+	 */
+	public ComponentIndex(UserGraph graph) {
+		this.graph = graph;
+		int n = graph.size();
+		freeIds = new IntDeque();
+		first = new IntDeque();
+		second = new IntDeque();
+
+		// union-find with path halving and union by size
+		int[] parent = new int[n];
+		int[] weight = new int[n];
+		for (int u = 0; u < n; u++) {
+			parent[u] = u;
+			weight[u] = 1;
+		}
+		for (int u = 0; u < n; u++) {
+			for (int i = graph.studentStart(u); i < graph.studentEnd(u); i++) {
+				int a = find(parent, u);
+				int b = find(parent, graph.studentAt(i));
+				if (a == b)
+					continue;
+				if (weight[a] < weight[b]) {
+					int tmp = a;
+					a = b;
+					b = tmp;
+				}
+				parent[b] = a;
+				weight[a] += weight[b];
+			}
+		}
+
+		// flatten the roots into dense component ids
+		componentOf = new int[n];
+		count = 0;
+		for (int u = 0; u < n; u++)
+			if (parent[u] == u)
+				weight[u] = count++; // reuse as root -> component id
+		sizes = new int[count];
+		representatives = new int[count];
+		for (int u = 0; u < n; u++) {
+			int root = find(parent, u);
+			int c = weight[root];
+			componentOf[u] = c;
+			if (sizes[c]++ == 0)
+				representatives[c] = u;
+		}
+
+		bound = count;
+
+		// bucket components by size
+		firstOfSize = new int[n+1];
+		Arrays.fill(firstOfSize, -1);
+		nextOfSize = new int[count];
+		prevOfSize = new int[count];
+		for (int c = count - 1; c >= 0; c--)
+			bucket(c);
+	}
+
+	/**
+	 * Finds the root of the given user in the union-find forest
+	 * @param parent the parent of each user
+	 * @param u the index of the user
+	 * @return the index of the root
+	 */
+	private static int find(int[] parent, int u) {
+		while (parent[u] != u) {
+			parent[u] = parent[parent[u]];
+			u = parent[u];
+		}
+		return u;
+	}
+
+	/**
+	 * Gets the number of connected components
+	 * @return the number of components
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * Gets the upper bound (exclusive) of the component ids in use
+	 * @return the bound
+	 */
+	public int bound() {
+		return bound;
+	}
+
+	/**
+	 * Gets the component of the specified user
+	 * @param user the index of the user
+	 * @return the component
+	 */
+	public int componentOf(int user) {
+		return componentOf[user];
+	}
+
+	/**
+	 * Gets the number of users in the specified component
+	 * @param component the component (a size of 0 means the id is unused)
+	 * @return the number of users
+	 */
+	public int size(int component) {
+		return sizes[component];
+	}
+
+	/**
+	 * Gets a user of the specified component
+	 * @param component the component
+	 * @return the index of the user
+	 */
+	public int representative(int component) {
+		return representatives[component];
+	}
+
+	/**
+	 * Finds a component with exactly the given number of users
+	 * @param size the number of users
+	 * @return the component or -1 if there is no such component
+	 */
+	public int componentOfSize(int size) {
+		if (size <= 0 || size >= firstOfSize.length)
+			return -1;
+		return firstOfSize[size];
+	}
+
+	/**
+	 * Gets another component with the same size as the given component
+	 * @param component the component
+	 * @return the next component or -1 if there is none
+	 */
+	public int nextOfSize(int component) {
+		return nextOfSize[component];
+	}
+
+	/**
+	 * Stores the versions of the users per component of this index from now
+	 * on
+	 * @param store the versions of the users
+	 */
+	void attach(VersionStore store) {
+		store.attach(this);
+		this.store = store;
+	}
+
+	/**
+	 * Updates the index after a relation was added
+	 * @param coach the index of the coach
+	 * @param student the index of the student
+	 */
+	void relationAdded(int coach, int student) {
+		int a = componentOf[coach];
+		int b = componentOf[student];
+		if (a == b)
+			return;
+
+		// relabel the smaller component into the larger one
+		int from = student;
+		if (sizes[a] < sizes[b]) {
+			int tmp = a;
+			a = b;
+			b = tmp;
+			from = coach;
+		}
+		unbucket(a);
+		unbucket(b);
+		relabel(from, b, a);
+		sizes[a] += sizes[b];
+		sizes[b] = 0;
+		freeIds.addLast(b);
+		count--;
+		bucket(a);
+	}
+
+	/**
+	 * Updates the index after a relation was removed
+	 * @param coach the index of the coach
+	 * @param student the index of the student
+	 */
+	void relationRemoved(int coach, int student) {
+		if (coach == student)
+			return;
+		if (marks == null)
+			marks = new int[componentOf.length];
+		if (epoch >= Integer.MAX_VALUE - 2) {
+			Arrays.fill(marks, 0);
+			epoch = 0;
+		}
+		epoch += 2;
+		int markFirst = epoch, markSecond = epoch + 1;
+
+		// search from both endpoints in lockstep until the searches meet (the
+		// component is still connected) or one of them runs out of users
+		first.clear();
+		second.clear();
+		marks[coach] = markFirst;
+		marks[student] = markSecond;
+		first.addLast(coach);
+		second.addLast(student);
+		int split;
+		while (true) {
+			if (first.isEmpty()) {
+				split = coach;
+				break;
+			}
+			if (expand(first, markFirst, markSecond))
+				return;
+			if (second.isEmpty()) {
+				split = student;
+				break;
+			}
+			if (expand(second, markSecond, markFirst))
+				return;
+		}
+
+		// split the exhausted side off into a new component
+		int old = componentOf[split];
+		int c = freeIds.isEmpty() ? newId() : freeIds.pollLast();
+		if (store != null)
+			store.created(c, old);
+		unbucket(old);
+		int moved = relabel(split, old, c);
+		sizes[old] -= moved;
+		sizes[c] = moved;
+		representatives[c] = split;
+		if (componentOf[representatives[old]] != old)
+			representatives[old] = split == coach ? student : coach;
+		count++;
+		bucket(old);
+		bucket(c);
+	}
+
+	/**
+	 * Expands one user of a search
+	 * @param work the work deque of the search
+	 * @param mark the mark of this search
+	 * @param other the mark of the other search
+	 * @return true if the other search was reached, false otherwise
+	 */
+	private boolean expand(IntDeque work, int mark, int other) {
+		int cur = work.pollFirst();
+		for (int i = graph.studentStart(cur); i < graph.studentEnd(cur); i++)
+			if (visit(work, graph.studentAt(i), mark, other))
+				return true;
+		for (int i = graph.coachStart(cur); i < graph.coachEnd(cur); i++)
+			if (visit(work, graph.coachAt(i), mark, other))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Visits a neighbour during a search
+	 * @param work the work deque of the search
+	 * @param user the index of the neighbour
+	 * @param mark the mark of this search
+	 * @param other the mark of the other search
+	 * @return true if the other search was reached, false otherwise
+	 */
+	private boolean visit(IntDeque work, int user, int mark, int other) {
+		if (marks[user] == other)
+			return true;
+		if (marks[user] != mark) {
+			marks[user] = mark;
+			work.addLast(user);
+		}
+		return false;
+	}
+
+	/**
+	 * Relabels all users reachable from the given user within a component
+	 * @param from the index of the user to start from
+	 * @param oldId the component to relabel
+	 * @param newId the new component
+	 * @return the number of users relabelled
+	 */
+	private int relabel(int from, int oldId, int newId) {
+		int moved = 1;
+		first.clear();
+		if (store != null)
+			store.moved(from, oldId, newId);
+		componentOf[from] = newId;
+		first.addLast(from);
+		while (!first.isEmpty()) {
+			int cur = first.pollLast();
+			for (int i = graph.studentStart(cur); i < graph.studentEnd(cur); 
+					i++) {
+				int student = graph.studentAt(i);
+				if (componentOf[student] == oldId) {
+					if (store != null)
+						store.moved(student, oldId, newId);
+					componentOf[student] = newId;
+					moved++;
+					first.addLast(student);
+				}
+			}
+			for (int i = graph.coachStart(cur); i < graph.coachEnd(cur); i++) {
+				int coach = graph.coachAt(i);
+				if (componentOf[coach] == oldId) {
+					if (store != null)
+						store.moved(coach, oldId, newId);
+					componentOf[coach] = newId;
+					moved++;
+					first.addLast(coach);
+				}
+			}
+		}
+		return moved;
+	}
+
+	/**
+	 * Allocates a new component id past the bound (grows the per-component 
+	 * arrays if needed)
+	 * @return the new id
+	 */
+	private int newId() {
+		if (bound == sizes.length) {
+			int grown = Math.max(16, bound*2);
+			sizes = Arrays.copyOf(sizes, grown);
+			representatives = Arrays.copyOf(representatives, grown);
+			nextOfSize = Arrays.copyOf(nextOfSize, grown);
+			prevOfSize = Arrays.copyOf(prevOfSize, grown);
+		}
+		return bound++;
+	}
+
+	/**
+	 * Adds a component to the bucket of its size
+	 * @param c the component
+	 */
+	private void bucket(int c) {
+		int head = firstOfSize[sizes[c]];
+		nextOfSize[c] = head;
+		prevOfSize[c] = -1;
+		if (head >= 0)
+			prevOfSize[head] = c;
+		firstOfSize[sizes[c]] = c;
+	}
+
+	/**
+	 * Removes a component from the bucket of its size
+	 * @param c the component
+	 */
+	private void unbucket(int c) {
+		if (prevOfSize[c] >= 0)
+			nextOfSize[prevOfSize[c]] = nextOfSize[c];
+		else
+			firstOfSize[sizes[c]] = nextOfSize[c];
+		if (nextOfSize[c] >= 0)
+			prevOfSize[nextOfSize[c]] = prevOfSize[c];
+	}
+
+	/**
+	 * Finds a set of whole components whose sizes sum to exactly the given 
+	 * number of users (a single component is preferred if there is one).
+	 * Uses a bitset subset-sum over the histogram of component sizes where the
+	 * components of each size are split into binary multiples so that the 
+	 * cost is O(items * total / 64) with O(log count) items per size.
+	 * @param total the number of users
+	 * @return the components or null if there is no such set (in particular
+	 * if there are fewer users in total, which is rejected before anything 
+	 * is allocated for the total)
+	 */
+	public int[] componentsOfTotalSize(int total) {
+		if (total <= 0 || total > componentOf.length)
+			return null;
+		int single = componentOfSize(total);
+		if (single >= 0)
+			return new int[]{ single };
+
+		// split the components of each size into items of 1, 2, 4, ... 
+		// components so every multiplicity can be formed from the items
+		int maxSize = Math.min(total, firstOfSize.length - 1);
+		int[] itemSize = new int[16];
+		int[] itemCount = new int[16];
+		int items = 0;
+		for (int size = 1; size <= maxSize; size++) {
+			int count = 0;
+			for (int c = firstOfSize[size]; c >= 0; c = nextOfSize[c])
+				count++;
+			for (int k = 1; count > 0 && (long) size*k <= total; k *= 2) {
+				int m = Math.min(k, count);
+				if (items == itemSize.length) {
+					itemSize = Arrays.copyOf(itemSize, items*2);
+					itemCount = Arrays.copyOf(itemCount, items*2);
+				}
+				itemSize[items] = size;
+				itemCount[items] = m;
+				items++;
+				count -= m;
+			}
+		}
+
+		// reachable[s] is set iff some subset of the items sums to s and 
+		// firstItem[s] is the item that first reached s
+		long[] reachable = new long[(total >>> 6) + 1];
+		int[] firstItem = new int[total+1];
+		reachable[0] = 1L;
+		long lastMask = -1L >>> (63 - (total & 63));
+		for (int item = 0; item < items && (reachable[total >>> 6] & 
+				(1L << (total & 63))) == 0; item++)
+			shiftOr(reachable, itemSize[item]*itemCount[item], lastMask, 
+					firstItem, item);
+		if ((reachable[total >>> 6] & (1L << (total & 63))) == 0)
+			return null;
+
+		// walk back through the items and take components of each size
+		int[] taken = new int[16];
+		int numTaken = 0;
+		int[] cursor = firstOfSize.clone();
+		for (int s = total; s > 0; ) {
+			int item = firstItem[s];
+			for (int j = 0; j < itemCount[item]; j++) {
+				if (numTaken == taken.length)
+					taken = Arrays.copyOf(taken, numTaken*2);
+				int c = cursor[itemSize[item]];
+				cursor[itemSize[item]] = nextOfSize[c];
+				taken[numTaken++] = c;
+			}
+			s -= itemSize[item]*itemCount[item];
+		}
+		return Arrays.copyOf(taken, numTaken);
+	}
+
+	/**
+	 * Sets bits |= bits << shift over a bitset and records the item that 
+	 * reached each newly set bit
+	 * @param bits the bitset
+	 * @param shift the number of bits to shift by
+	 * @param lastMask mask of the valid bits of the last word
+	 * @param firstItem the item that first reached each bit
+	 * @param item the current item
+	 */
+	private static void shiftOr(long[] bits, int shift, long lastMask, 
+			int[] firstItem, int item) {
+		int words = shift >>> 6;
+		int offset = shift & 63;
+		// descend so that the source words still hold the previous values
+		for (int i = bits.length - 1; i >= words; i--) {
+			long shifted = bits[i - words] << offset;
+			if (offset != 0 && i - words > 0)
+				shifted |= bits[i - words - 1] >>> (64 - offset);
+			if (i == bits.length - 1)
+				shifted &= lastMask;
+			long added = shifted & ~bits[i];
+			bits[i] |= shifted;
+			while (added != 0) {
+				firstItem[(i << 6) + Long.numberOfTrailingZeros(added)] = item;
+				added &= added - 1;
+			}
+		}
+	}
+
+}
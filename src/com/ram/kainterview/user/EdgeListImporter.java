@@ -0,0 +1,331 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.ram.kainterview.Error;
+
+/**
+ * Importer of a user base from a CSV or TSV edge list.
+ * Each line is "coach,student[,version]" (separated by commas or tabs), 
+ * where the optional version is the current version of the student. A line 
+ * with an empty or missing student ("user" or "user,,version") declares a 
+ * user without a relation, and the version then applies to that user. Blank 
+ * lines and lines starting with '#' are skipped, and ids may be quoted.
+ * External ids are mapped to dense indices in order of first appearance and 
+ * kept in the {@link IdDictionary} of the graph. Duplicate relations and 
+ * relations of a user with itself are dropped.
+ * The file is read through a FileChannel into a reused buffer and parsed 
+ * byte by byte, so no String is created per line.
+ */
+public final class EdgeListImporter {
+
+	/**
+	 * Size of the read buffer in bytes (also the maximum length of a line)
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Maximum number of columns of a line
+	 */
+	private static final int COLUMNS = 3;
+
+	/**
+	 * External ids of the users
+	 */
+	private final IdDictionary ids = new IdDictionary();
+
+	/**
+	 * Version of each user
+	 */
+	private int[] versions = new int[1 << 6];
+
+	/**
+	 * Coach of each relation
+	 */
+	private int[] coachIds = new int[1 << 6];
+
+	/**
+	 * Student of each relation
+	 */
+	private int[] studentIds = new int[1 << 6];
+
+	/**
+	 * Number of relations
+	 */
+	private int relations;
+
+	/**
+	 * Start and end of each column of the current line
+	 */
+	private final int[] columns = new int[2*COLUMNS];
+
+	/**
+	 * Number of the current line (for error messages)
+	 */
+	private long line;
+
+	// only created by read
+	private EdgeListImporter() { }
+
+	/**
+	 * Reads a user base from an edge list file
+	 * @param path the path of the edge list
+	 * @param header true if the first line is a header to skip
+	 * @return the user base
+	 * @throws IOException if the file cannot be read or a line is invalid
+	 */
+	public static UserGraph read(Path path, boolean header) 
+			throws IOException {
+		EdgeListImporter importer = new EdgeListImporter();
+		importer.parse(path, header);
+		return importer.build();
+	}
+
+	/**
+	 * Parses all lines of an edge list file
+	 * @param path the path of the edge list
+	 * @param header true if the first line is a header to skip
+	 * @throws IOException if the file cannot be read or a line is invalid
+	 */
+	private void parse(Path path, boolean header) throws IOException {
+		byte[] bytes = new byte[BUFFER_SIZE];
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		try (FileChannel channel = FileChannel.open(path, 
+				StandardOpenOption.READ)) {
+			boolean skip = header;
+			boolean eof = false;
+			while (!eof) {
+				eof = channel.read(buffer) < 0;
+				int end = buffer.position();
+				int start = 0;
+				for (int i = 0; i < end; i++) {
+					if (bytes[i] == '\n') {
+						if (!skip)
+							parseLine(bytes, start, i);
+						skip = false;
+						line++;
+						start = i + 1;
+					}
+				}
+				if (eof && start < end && !skip)
+					parseLine(bytes, start, end);
+				else if (start == 0 && end == bytes.length)
+					throw invalid("line too long");
+
+				// keep the partial line for the next read
+				System.arraycopy(bytes, start, bytes, 0, end - start);
+				buffer.position(end - start);
+			}
+		}
+	}
+
+	/**
+	 * Parses a line into a user declaration or a relation
+	 * @param bytes the buffer holding the line
+	 * @param from the start of the line
+	 * @param to the end of the line (excluding the line break)
+	 * @throws IOException if the line is invalid
+	 */
+	private void parseLine(byte[] bytes, int from, int to) throws IOException {
+		if (to > from && bytes[to-1] == '\r')
+			to--;
+		int count = split(bytes, from, to);
+		if (count == 0)
+			return;
+
+		int coach = id(bytes, 0);
+		int user = coach;
+		if (count > 1 && columns[2] < columns[3]) {
+			user = id(bytes, 1);
+			if (user != coach)
+				addRelation(coach, user);
+		}
+		if (count > 2 && columns[4] < columns[5])
+			versions[user] = version(bytes, columns[4], columns[5]);
+	}
+
+	/**
+	 * Splits a line into trimmed and unquoted columns
+	 * @param bytes the buffer holding the line
+	 * @param from the start of the line
+	 * @param to the end of the line
+	 * @return the number of columns (0 for a blank or comment line)
+	 * @throws IOException if the line has too many columns or no user
+	 */
+	private int split(byte[] bytes, int from, int to) throws IOException {
+		while (from < to && bytes[from] == ' ')
+			from++;
+		if (from == to || bytes[from] == '#')
+			return 0; // blank or comment line
+
+		int count = 0;
+		int start = from;
+		for (int i = from; i <= to; i++) {
+			if (i < to && bytes[i] != ',' && bytes[i] != '\t')
+				continue;
+			if (count == COLUMNS)
+				throw invalid("too many columns");
+			int s = start;
+			int e = i;
+			while (s < e && bytes[s] == ' ')
+				s++;
+			while (e > s && bytes[e-1] == ' ')
+				e--;
+			if (e - s >= 2 && bytes[s] == '"' && bytes[e-1] == '"') {
+				s++;
+				e--;
+			}
+			if (count == 0 && s == e)
+				throw invalid("missing user");
+			columns[2*count] = s;
+			columns[2*count+1] = e;
+			count++;
+			start = i + 1;
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the index of the user whose id is in a column, adding the user if
+	 * the id is new
+	 * @param bytes the buffer holding the line
+	 * @param column the column
+	 * @return the index of the user
+	 */
+	private int id(byte[] bytes, int column) {
+		int user = ids.add(bytes, columns[2*column], columns[2*column+1]);
+		if (user == versions.length)
+			versions = Arrays.copyOf(versions, user*2);
+		return user;
+	}
+
+	/**
+	 * Parses a version number
+	 * @param bytes the buffer holding the number
+	 * @param from the start of the number
+	 * @param to the end of the number
+	 * @return the version number
+	 * @throws IOException if the column is not an int
+	 */
+	private int version(byte[] bytes, int from, int to) throws IOException {
+		boolean negative = bytes[from] == '-';
+		int i = negative || bytes[from] == '+' ? from + 1 : from;
+		if (i == to)
+			throw invalid("invalid version");
+		long value = 0;
+		for (; i < to; i++) {
+			int digit = bytes[i] - '0';
+			if (digit < 0 || digit > 9)
+				throw invalid("invalid version");
+			value = value*10 + digit;
+			if (value > Integer.MAX_VALUE + 1L)
+				throw invalid("invalid version");
+		}
+		value = negative ? -value : value;
+		if (value > Integer.MAX_VALUE)
+			throw invalid("invalid version");
+		return (int) value;
+	}
+
+	/**
+	 * Adds a coach-student relation
+	 * @param coach the index of the coach
+	 * @param student the index of the student
+	 */
+	private void addRelation(int coach, int student) {
+		if (relations == coachIds.length) {
+			if (relations == Integer.MAX_VALUE - 8)
+				throw new IllegalArgumentException(
+						Error.TOO_MANY_USERS.toString());
+			int grown = (int) Math.min(Integer.MAX_VALUE - 8, 2L*relations);
+			coachIds = Arrays.copyOf(coachIds, grown);
+			studentIds = Arrays.copyOf(studentIds, grown);
+		}
+		coachIds[relations] = coach;
+		studentIds[relations] = student;
+		relations++;
+	}
+
+	/**
+	 * Creates the exception for an invalid line
+	 * @param reason the reason why the line is invalid
+	 * @return the exception
+	 */
+	private IOException invalid(String reason) {
+		return new IOException(Error.EDGE_LIST + " " + (line + 1) + ": " + 
+				reason);
+	}
+
+	/**
+	 * Drops duplicate relations and builds the graph
+	 * @return the graph
+	 */
+	private UserGraph build() {
+		int size = ids.size();
+
+		// group the relations by coach (counting sort) to find duplicates
+		int[] start = new int[size + 1];
+		for (int i = 0; i < relations; i++)
+			start[coachIds[i] + 1]++;
+		for (int u = 0; u < size; u++)
+			start[u+1] += start[u];
+		int[] students = new int[relations];
+		int[] fill = Arrays.copyOf(start, size);
+		for (int i = 0; i < relations; i++)
+			students[fill[coachIds[i]]++] = studentIds[i];
+
+		// keep the first occurrence of each relation in file order
+		int[] lastCoach = new int[size];
+		Arrays.fill(lastCoach, -1);
+		boolean duplicates = false;
+		for (int u = 0; u < size; u++) {
+			for (int i = start[u]; i < start[u+1]; i++) {
+				if (lastCoach[students[i]] == u) {
+					students[i] = -1;
+					duplicates = true;
+				} else {
+					lastCoach[students[i]] = u;
+				}
+			}
+		}
+		if (duplicates) {
+			int count = 0;
+			for (int u = 0; u < size; u++) {
+				for (int i = start[u]; i < start[u+1]; i++) {
+					if (students[i] >= 0) {
+						coachIds[count] = u;
+						studentIds[count] = students[i];
+						count++;
+					}
+				}
+			}
+			relations = count;
+		}
+
+		return new UserGraph(Arrays.copyOf(versions, size), coachIds, 
+				studentIds, relations, ids);
+	}
+
+}
@@ -0,0 +1,144 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writer of a user base as a tab-separated edge list: one line 
+ * "coach"coach&#92;tstudent"lt;tab"coach&#92;tstudent"gt;student" per coach-student relation, and one line "user" per 
+ * user that takes part in no relation. Lines are formatted by hand into a 
+ * fixed buffer so that writing does not allocate per line.
+ */
+class EdgeListWriter implements Closeable {
+
+	/**
+	 * Size of the output buffer in bytes
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Maximum length of a line in bytes (two ints, a tab and a newline)
+	 */
+	private static final int MAX_LINE = 2*10 + 2;
+
+	/**
+	 * Output file
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * Output buffer
+	 */
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	/**
+	 * Wrapper of the output buffer for the channel
+	 */
+	private final ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+
+	/**
+	 * Number of bytes in the output buffer
+	 */
+	private int length;
+
+	/**
+	 * Creates (or truncates) the output file
+	 * @param path the path of the output file
+	 * @throws IOException if the file cannot be opened
+	 */
+	EdgeListWriter(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, 
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * Writes a user that takes part in no relation
+	 * @param user the index of the user
+	 * @throws IOException if the file cannot be written
+	 */
+	void user(int user) throws IOException {
+		reserve();
+		append(user);
+		buffer[length++] = '\n';
+	}
+
+	/**
+	 * Writes a coach-student relation
+	 * @param coach the index of the coach
+	 * @param student the index of the student
+	 * @throws IOException if the file cannot be written
+	 */
+	void relation(int coach, int student) throws IOException {
+		reserve();
+		append(coach);
+		buffer[length++] = '\t';
+		append(student);
+		buffer[length++] = '\n';
+	}
+
+	/**
+	 * Flushes the buffer if a line might not fit in it
+	 * @throws IOException if the file cannot be written
+	 */
+	private void reserve() throws IOException {
+		if (length > BUFFER_SIZE - MAX_LINE)
+			flush();
+	}
+
+	/**
+	 * Appends the decimal digits of a non-negative int to the buffer
+	 * @param value the value
+	 */
+	private void append(int value) {
+		int digits = 1;
+		for (int rest = value / 10; rest != 0; rest /= 10)
+			digits++;
+		length += digits;
+		for (int i = length - 1; i >= length - digits; i--) {
+			buffer[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+
+	/**
+	 * Writes the buffer to the file
+	 * @throws IOException if the file cannot be written
+	 */
+	private void flush() throws IOException {
+		wrapper.clear().limit(length);
+		while (wrapper.hasRemaining())
+			channel.write(wrapper);
+		length = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+}
@@ -0,0 +1,256 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.ram.kainterview.Error;
+
+/**
+ * Dictionary mapping external user ids (such as the ids of an imported 
+ * roster) to the dense indices of the users and back.
+ * Ids are stored as bytes in a single arena and looked up through an 
+ * open-addressing hash table, so adding an id does not allocate a String.
+ */
+public final class IdDictionary {
+
+	/**
+	 * Maximum total length of the ids in bytes
+	 */
+	private static final int MAX_BYTES = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Bytes of all ids, one after another
+	 */
+	private byte[] bytes = new byte[1 << 10];
+
+	/**
+	 * Start of each id in the arena (the id of index i ends where the id of 
+	 * index i+1 starts)
+	 */
+	private int[] offsets = new int[1 << 6];
+
+
+	/**
+	 * Number of ids
+	 */
+	private int size;
+
+	/**
+	 * Hash table of (hash, index+1) pairs of the ids (index+1 is 0 for an 
+	 * empty slot), with a power of two number of slots. Keeping the hash next
+	 * to the index lets a probe skip other ids without reading their bytes.
+	 */
+	private int[] table = new int[2 << 7];
+
+	/**
+	 * Rebuilds a dictionary from the arena of another one (such as one read 
+	 * from a snapshot), taking ownership of the arrays
+	 * @param bytes the bytes of all ids, one after another
+	 * @param offsets the start of each id followed by the end of the last one
+	 * @return the dictionary, or null if the offsets are not consistent or 
+	 * the ids are not distinct
+	 */
+	static IdDictionary of(byte[] bytes, int[] offsets) {
+		IdDictionary ids = new IdDictionary();
+		int size = offsets.length - 1;
+		if (size < 0 || offsets[0] != 0 || offsets[size] != bytes.length)
+			return null;
+		int slots = 1 << 7;
+		while (slots < 2L*size)
+			slots *= 2;
+		ids.bytes = bytes;
+		ids.offsets = offsets;
+		ids.table = new int[2*slots];
+		for (int i = 0; i < size; i++) {
+			if (offsets[i+1] < offsets[i])
+				return null;
+			int hash = hash(bytes, offsets[i], offsets[i+1]);
+			if (ids.find(bytes, offsets[i], offsets[i+1], hash) >= 0)
+				return null;
+			insert(ids.table, hash, i);
+			ids.size++;
+		}
+		return ids;
+	}
+
+	/**
+	 * Gets the number of ids
+	 * @return the number of ids
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the external id of a user
+	 * @param index the index of the user
+	 * @return the external id
+	 */
+	public String get(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("User: " + index);
+		return new String(bytes, offsets[index], 
+				offsets[index+1] - offsets[index], StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Gets the index of the user with an external id
+	 * @param id the external id
+	 * @return the index of the user, or -1 if no user has this id
+	 */
+	public int indexOf(String id) {
+		byte[] key = id.getBytes(StandardCharsets.UTF_8);
+		return find(key, 0, key.length, hash(key, 0, key.length));
+	}
+
+	/**
+	 * Gets the bytes of all ids, one after another (the arena may be longer
+	 * than the ids)
+	 * @return the arena
+	 */
+	byte[] arena() {
+		return bytes;
+	}
+
+	/**
+	 * Gets the start of an id in the arena
+	 * @param index the index of the id, or the number of ids for the end of
+	 * the last one
+	 * @return the offset in bytes
+	 */
+	int offset(int index) {
+		return offsets[index];
+	}
+
+	/**
+	 * Gets the index of an id, adding it with the next index if it is new
+	 * @param key the array holding the id
+	 * @param from the start of the id in the array
+	 * @param to the end of the id in the array
+	 * @return the index of the id
+	 */
+	int add(byte[] key, int from, int to) {
+		int hash = hash(key, from, to);
+		int index = find(key, from, to, hash);
+		if (index >= 0)
+			return index;
+
+		int length = to - from;
+		int used = offsets[size];
+		if (length > bytes.length - used) {
+			long needed = (long) used + length;
+			if (needed > MAX_BYTES || size == Integer.MAX_VALUE - 1)
+				throw new IllegalArgumentException(
+						Error.TOO_MANY_USERS.toString());
+			bytes = Arrays.copyOf(bytes, (int) Math.min(MAX_BYTES, 
+					Math.max(2L*bytes.length, needed)));
+		}
+		if (size + 2 > offsets.length)
+			offsets = Arrays.copyOf(offsets, offsets.length*2);
+		System.arraycopy(key, from, bytes, used, length);
+		offsets[size+1] = used + length;
+		index = size++;
+		insert(table, hash, index);
+		if (4*size > table.length)
+			rehash();
+		return index;
+	}
+
+	/**
+	 * Looks up an id in the hash table
+	 * @param key the array holding the id
+	 * @param from the start of the id in the array
+	 * @param to the end of the id in the array
+	 * @param hash the hash of the id
+	 * @return the index of the id, or -1 if it is absent
+	 */
+	private int find(byte[] key, int from, int to, int hash) {
+		int mask = (table.length >> 1) - 1;
+		for (int slot = hash & mask; table[2*slot+1] != 0; 
+				slot = (slot+1) & mask) {
+			int index = table[2*slot+1] - 1;
+			if (table[2*slot] == hash && equals(index, key, from, to))
+				return index;
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks whether an id equals the given bytes
+	 * @param index the index of the id
+	 * @param key the array holding the bytes
+	 * @param from the start of the bytes
+	 * @param to the end of the bytes
+	 * @return true if they are equal, false otherwise
+	 */
+	private boolean equals(int index, byte[] key, int from, int to) {
+		int start = offsets[index];
+		if (offsets[index+1] - start != to - from)
+			return false;
+		for (int i = from; i < to; i++)
+			if (bytes[start++] != key[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Inserts an id into a hash table
+	 * @param into the hash table
+	 * @param hash the hash of the id
+	 * @param index the index of the id
+	 */
+	private static void insert(int[] into, int hash, int index) {
+		int mask = (into.length >> 1) - 1;
+		int slot = hash & mask;
+		while (into[2*slot+1] != 0)
+			slot = (slot+1) & mask;
+		into[2*slot] = hash;
+		into[2*slot+1] = index + 1;
+	}
+
+	/**
+	 * Doubles the number of slots of the hash table (keeping it at most half 
+	 * full)
+	 */
+	private void rehash() {
+		int[] grown = new int[table.length*2];
+		for (int slot = 0; slot < table.length; slot += 2)
+			if (table[slot+1] != 0)
+				insert(grown, table[slot], table[slot+1] - 1);
+		table = grown;
+	}
+
+	/**
+	 * Hashes the bytes of an id (FNV-1a followed by a final mix)
+	 * @param key the array holding the id
+	 * @param from the start of the id in the array
+	 * @param to the end of the id in the array
+	 * @return the hash
+	 */
+	private static int hash(byte[] key, int from, int to) {
+		int hash = 0x811C9DC5;
+		for (int i = from; i < to; i++)
+			hash = (hash ^ key[i]) * 0x01000193;
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		return hash ^ (hash >>> 13);
+	}
+
+}
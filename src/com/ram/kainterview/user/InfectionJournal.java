@@ -0,0 +1,342 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * In-memory journal of the version changes of the last rollouts of a user 
+ * base, so that they can be undone.
+ * Each version change made during a rollout is journaled as a compact delta
+ * (the index of the user and its previous version), and rolling a rollout 
+ * back restores the previous versions in reverse order. A total infection of
+ * a component whose users were all on one version is journaled in constant 
+ * time as a single delta of the component, which is undone by moving the 
+ * component back as a whole; before a relation changes the components it 
+ * touches, their deltas are expanded into deltas of their users, so that 
+ * rollbacks stay exact whatever the components have become since (the 
+ * components with deltas are counted, so a relation change that touches 
+ * none of them costs constant time). 
+ * Only the last rollouts are kept: beginning a rollout beyond the limit 
+ * forgets the oldest one. A rollout belongs to the thread that began it: 
+ * only the changes that thread makes until it ends the rollout are 
+ * journaled, so the infections of other callers of the user base are never 
+ * mixed into it.
+ */
+public class InfectionJournal implements VersionListener {
+
+	/**
+	 * User base
+	 */
+	private final UserGraph graph;
+
+	/**
+	 * Users (or complements of components) and previous versions of the 
+	 * deltas (the live deltas start at base)
+	 */
+	private int[] users, oldVersions;
+
+	/**
+	 * Position of the first live delta
+	 */
+	private int base;
+
+	/**
+	 * Position after the last delta
+	 */
+	private int size;
+
+	/**
+	 * Position of the first delta of each rollout kept (a ring buffer 
+	 * starting at first)
+	 */
+	private final int[] starts;
+
+	/**
+	 * Position in starts of the oldest rollout kept
+	 */
+	private int first;
+
+	/**
+	 * Number of rollouts kept
+	 */
+	private int rollouts;
+
+	/**
+	 * Number of live deltas of each component that has any
+	 */
+	private final Map<Integer, Integer> componentDeltas = new HashMap<>();
+
+	/**
+	 * Thread whose changes are journaled into the last rollout (null if no 
+	 * rollout is open)
+	 */
+	private Thread recording;
+
+	/**
+	 * Whether a rollback is restoring versions (its changes are not 
+	 * journaled)
+	 */
+	private boolean rollingBack;
+
+	/**
+	 * Constructs an empty journal observing a user base
+	 * @param graph the user base
+	 * @param limit the maximum number of rollouts kept
+	 */
+	public InfectionJournal(UserGraph graph, int limit) {
+		if (limit < 1)
+			throw new IllegalArgumentException("Invalid rollout limit");
+		this.graph = graph;
+		users = new int[16];
+		oldVersions = new int[16];
+		starts = new int[limit];
+		graph.addVersionListener(this);
+	}
+
+	/**
+	 * Begins a new rollout owned by the calling thread (the changes it makes 
+	 * from now on are journaled as part of it), ending the open one
+	 */
+	public synchronized void begin() {
+		end();
+		if (rollouts == starts.length) {
+			first = (first + 1) % starts.length;
+			rollouts--;
+			int forgotten = base;
+			base = rollouts == 0 ? size : starts[first];
+			for (int i = forgotten; i < base; i++)
+				count(users[i], -1);
+		}
+		starts[(first + rollouts) % starts.length] = size;
+		rollouts++;
+		recording = Thread.currentThread();
+	}
+
+	/**
+	 * Ends the open rollout (a rollout without any change is not kept)
+	 */
+	public synchronized void end() {
+		if (recording == null)
+			return;
+		recording = null;
+		if (starts[(first + rollouts - 1) % starts.length] == size) {
+			rollouts--;
+			if (rollouts == 0)
+				base = size = 0;
+		}
+	}
+
+	/**
+	 * Checks whether the changes being made are journaled
+	 * @return true if the calling thread records a rollout, false otherwise
+	 */
+	private boolean recording() {
+		return recording == Thread.currentThread() && !rollingBack;
+	}
+
+	@Override
+	public synchronized void versionChanged(int user, int oldVersion, 
+			int newVersion) {
+		if (!recording())
+			return;
+		append(user, oldVersion);
+	}
+
+	@Override
+	public synchronized void componentVersionChanging(ComponentChange change) {
+		if (!recording() || change.changed() == 0)
+			return;
+		if (change.uniform())
+			append(~change.component(), change.oldVersion());
+		else
+			change.forEach(this);
+	}
+
+	@Override
+	public synchronized void relationChanging(UserGraph graph, int coach, 
+			int student, boolean added) {
+		if (componentDeltas.isEmpty())
+			return;
+		ComponentIndex index = graph.components();
+		int c = index.componentOf(coach);
+		expand(index, c);
+		if (index.componentOf(student) != c)
+			expand(index, index.componentOf(student));
+	}
+
+	/**
+	 * Appends a delta
+	 * @param user the index of the user, or the complement of the component
+	 * @param oldVersion the previous version number
+	 */
+	private void append(int user, int oldVersion) {
+		if (size == users.length) {
+			compact();
+			if (size == users.length) {
+				users = Arrays.copyOf(users, size*2);
+				oldVersions = Arrays.copyOf(oldVersions, size*2);
+			}
+		}
+		users[size] = user;
+		oldVersions[size] = oldVersion;
+		size++;
+		count(user, 1);
+	}
+
+	/**
+	 * Counts a delta of a component that is added or dropped
+	 * @param user the index of the user, or the complement of the component
+	 * @param delta 1 if the delta is added, -1 if it is dropped
+	 */
+	private void count(int user, int delta) {
+		if (user >= 0)
+			return;
+		if (componentDeltas.merge(user, delta, Integer::sum) == 0)
+			componentDeltas.remove(user);
+	}
+
+	/**
+	 * Replaces the deltas of a component by deltas of each of its users (the
+	 * users are still those of the component when the deltas were journaled
+	 * since the relations have not changed since)
+	 * @param index the component index
+	 * @param component the component
+	 */
+	private void expand(ComponentIndex index, int component) {
+		Integer deltas = componentDeltas.remove(~component);
+		if (deltas == null)
+			return;
+
+		int extra = deltas * (index.size(component) - 1);
+		compact();
+		int[] us = new int[Math.max(16, size + extra)];
+		int[] olds = new int[us.length];
+		int[] j = new int[1];
+		int r = 0;
+		for (int i = 0; i < size; i++) {
+			while (r < rollouts && starts[(first + r) % starts.length] == i)
+				starts[(first + r++) % starts.length] = j[0];
+			if (users[i] != ~component) {
+				us[j[0]] = users[i];
+				olds[j[0]++] = oldVersions[i];
+				continue;
+			}
+			int old = oldVersions[i];
+			graph.traverse(traversal -> traversal.forEachConnected(
+					index.representative(component), u -> {
+				us[j[0]] = u;
+				olds[j[0]++] = old;
+			}));
+		}
+		while (r < rollouts)
+			starts[(first + r++) % starts.length] = j[0];
+		users = us;
+		oldVersions = olds;
+		size = j[0];
+	}
+
+	/**
+	 * Undoes the last rollout kept (infections wait for the rollback)
+	 * @return the number of version changes undone, or -1 if no rollout is 
+	 * kept
+	 */
+	public int rollback() {
+		// the user base is locked before the journal like an infection does
+		Lock lock = graph.topology().writeLock();
+		lock.lock();
+		try {
+			graph.infectionStarted();
+			try {
+				return undo();
+			} finally {
+				graph.infectionFinished();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Undoes the last rollout kept (the caller holds the write lock of the 
+	 * user base)
+	 * @return the number of version changes undone, or -1 if no rollout is 
+	 * kept
+	 */
+	private synchronized int undo() {
+		if (rollouts == 0)
+			return -1;
+		rollouts--;
+		recording = null;
+		int start = starts[(first + rollouts) % starts.length];
+		rollingBack = true;
+		try {
+			for (int i = size - 1; i >= start; i--) {
+				if (users[i] >= 0) {
+					graph.setVersion(users[i], oldVersions[i]);
+					continue;
+				}
+				count(users[i], -1);
+				ComponentIndex index = graph.components();
+				graph.setComponentVersion(index.representative(~users[i]), 
+						oldVersions[i]);
+			}
+		} finally {
+			rollingBack = false;
+		}
+		int undone = size - start;
+		size = start;
+		if (rollouts == 0)
+			base = size = 0;
+		return undone;
+	}
+
+	/**
+	 * Gets the number of rollouts that can be undone
+	 * @return the number of rollouts
+	 */
+	public synchronized int rollouts() {
+		return rollouts;
+	}
+
+	/**
+	 * Gets the number of version changes journaled
+	 * @return the number of deltas
+	 */
+	public synchronized int size() {
+		return size - base;
+	}
+
+	/**
+	 * Moves the live deltas to the front of the arrays
+	 */
+	private void compact() {
+		if (base == 0)
+			return;
+		System.arraycopy(users, base, users, 0, size - base);
+		System.arraycopy(oldVersions, base, oldVersions, 0, size - base);
+		for (int i = 0; i < rollouts; i++)
+			starts[(first + i) % starts.length] -= base;
+		size -= base;
+		base = 0;
+	}
+
+}
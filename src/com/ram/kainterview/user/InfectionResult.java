@@ -0,0 +1,84 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+/**
+ * Outcome of a limited infection: the number of users whose version changed
+ * and the number of coach-student pairs left on different versions across 
+ * the boundary of the infected users
+ */
+public final class InfectionResult {
+
+	/**
+	 * User the infection started from
+	 */
+	private final int seed;
+
+	/**
+	 * Number of users whose version changed
+	 */
+	private final int infected;
+
+	/**
+	 * Number of coach-student pairs split by the infection
+	 */
+	private final int splitPairs;
+
+	/**
+	 * Constructs the outcome of a limited infection
+	 * @param seed the index of the user the infection started from
+	 * @param infected the number of users whose version changed
+	 * @param splitPairs the number of coach-student pairs split
+	 */
+	InfectionResult(int seed, int infected, int splitPairs) {
+		this.seed = seed;
+		this.infected = infected;
+		this.splitPairs = splitPairs;
+	}
+
+	/**
+	 * Gets the user the infection started from
+	 * @return the index of the user
+	 */
+	public int seed() {
+		return seed;
+	}
+
+	/**
+	 * Gets the number of users whose version changed
+	 * @return the number of users
+	 */
+	public int infected() {
+		return infected;
+	}
+
+	/**
+	 * Gets the number of coach-student pairs where exactly one of the users 
+	 * was reached by the infection and the two are on different versions
+	 * @return the number of pairs
+	 */
+	public int splitPairs() {
+		return splitPairs;
+	}
+
+	@Override
+	public String toString() {
+		return infected + " users infected, " + splitPairs + " pairs split";
+	}
+
+}
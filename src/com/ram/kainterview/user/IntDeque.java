@@ -0,0 +1,126 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.util.Arrays;
+
+/**
+ * Growable double-ended queue of ints backed by a circular array (avoids the 
+ * boxing of {@link java.util.ArrayDeque} for user indices)
+ */
+class IntDeque {
+
+	/**
+	 * Initial capacity of the circular array (must be a power of 2)
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Circular array of elements
+	 */
+	private int[] elements = new int[INITIAL_CAPACITY];
+
+	/**
+	 * Position of the first element
+	 */
+	private int head;
+
+	/**
+	 * Number of elements
+	 */
+	private int size;
+
+	/**
+	 * Adds an element to the front of this deque
+	 * @param e the element
+	 */
+	void addFirst(int e) {
+		if (size == elements.length)
+			grow();
+		head = (head - 1) & (elements.length - 1);
+		elements[head] = e;
+		size++;
+	}
+
+	/**
+	 * Adds an element to the back of this deque
+	 * @param e the element
+	 */
+	void addLast(int e) {
+		if (size == elements.length)
+			grow();
+		elements[(head + size) & (elements.length - 1)] = e;
+		size++;
+	}
+
+	/**
+	 * Removes the element at the front of this deque (requires: !isEmpty())
+	 * @return the element
+	 */
+	int pollFirst() {
+		int e = elements[head];
+		head = (head + 1) & (elements.length - 1);
+		size--;
+		return e;
+	}
+
+	/**
+	 * Removes the element at the back of this deque (requires: !isEmpty())
+	 * @return the element
+	 */
+	int pollLast() {
+		size--;
+		return elements[(head + size) & (elements.length - 1)];
+	}
+
+	/**
+	 * Gets the number of elements in this deque
+	 * @return the number of elements
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Checks whether this deque is empty
+	 * @return true if there are no elements, false otherwise
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all elements (keeps the allocated capacity for reuse)
+	 */
+	void clear() {
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * Doubles the capacity while unrolling the circular array
+	 */
+	private void grow() {
+		int[] grown = Arrays.copyOfRange(elements, head, 
+				head + elements.length*2);
+		System.arraycopy(elements, 0, grown, elements.length - head, head);
+		elements = grown;
+		head = 0;
+	}
+
+}
@@ -0,0 +1,264 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scoring of the users as starting points of an exact limited infection.
+ * Every candidate seed is evaluated with a dry run of the bounded search of 
+ * {@link Traversal#exactInfect(int, int, int)} on its own version + 1, in 
+ * parallel on a {@link ForkJoinPool}. When all users are considered, at most
+ * {@link #MAX_CANDIDATES} candidates spread evenly over the user base are 
+ * scored, so the cost of the scoring does not grow with the user base. 
+ * Seeds are ranked by the number of users infected (reaching the target 
+ * first), then by the number of coach-student pairs split, then by index. 
+ * The relations and versions must not change during the scoring.
+ */
+public class SeedScorer {
+
+	/**
+	 * Minimum number of users visited by a single task (smaller ranges of 
+	 * candidates are not split further)
+	 */
+	private static final long GRAIN = 1 << 13;
+
+	/**
+	 * Maximum number of candidates scored when all users are considered
+	 */
+	public static final int MAX_CANDIDATES = 1 << 12;
+
+	// prevents instantiation
+	private SeedScorer() { }
+
+	/**
+	 * Finds the best seeds among all users on the common pool. A connected 
+	 * component that fits entirely in the target is infected entirely from 
+	 * any of its users, so only its representative is scored, and of the 
+	 * remaining candidates at most {@link #MAX_CANDIDATES} evenly spaced 
+	 * ones are scored.
+	 * @param graph the user base
+	 * @param users the number of users to infect
+	 * @param count the maximum number of seeds to return
+	 * @return the best seeds, best first
+	 */
+	public static InfectionResult[] bestSeeds(UserGraph graph, int users, 
+			int count) {
+		return bestSeeds(graph, users, count, (TraversalCounter) null);
+	}
+
+	/**
+	 * Finds the best seeds among all users on the common pool and counts the
+	 * work of the scoring
+	 * @param graph the user base
+	 * @param users the number of users to infect
+	 * @param count the maximum number of seeds to return
+	 * @param counter the counter of the work of the scoring (or null)
+	 * @return the best seeds, best first
+	 */
+	public static InfectionResult[] bestSeeds(UserGraph graph, int users, 
+			int count, TraversalCounter counter) {
+		return graph.shared(() -> {
+			ComponentIndex components = graph.components();
+			int[] candidates = new int[graph.size()];
+			int size = 0;
+			for (int u = 0; u < graph.size(); u++) {
+				int c = components.componentOf(u);
+				if (components.size(c) > users || 
+						components.representative(c) == u)
+					candidates[size++] = u;
+			}
+			if (size > MAX_CANDIDATES) {
+				// sample with an even stride so every region is represented
+				for (int i = 0; i < MAX_CANDIDATES; i++)
+					candidates[i] = candidates[(int) ((long) i*size / 
+							MAX_CANDIDATES)];
+				size = MAX_CANDIDATES;
+			}
+			return bestSeeds(graph, users, count, 
+					Arrays.copyOf(candidates, size), ForkJoinPool.commonPool(),
+					counter);
+		});
+	}
+
+	/**
+	 * Finds the best seeds among the given candidates on the given pool
+	 * @param graph the user base
+	 * @param users the number of users to infect
+	 * @param count the maximum number of seeds to return
+	 * @param candidates the indices of the users to score
+	 * @param pool the pool to run the scoring on
+	 * @return the best seeds, best first
+	 */
+	public static InfectionResult[] bestSeeds(UserGraph graph, int users, 
+			int count, int[] candidates, ForkJoinPool pool) {
+		return bestSeeds(graph, users, count, candidates, pool, null);
+	}
+
+	/**
+	 * Finds the best seeds among the given candidates on the given pool and 
+	 * counts the work of the scoring (across all the threads of the pool)
+	 * @param graph the user base
+	 * @param users the number of users to infect
+	 * @param count the maximum number of seeds to return
+	 * @param candidates the indices of the users to score
+	 * @param pool the pool to run the scoring on
+	 * @param counter the counter of the work of the scoring (or null)
+	 * @return the best seeds, best first
+	 */
+	public static InfectionResult[] bestSeeds(UserGraph graph, int users, 
+			int count, int[] candidates, ForkJoinPool pool, 
+			TraversalCounter counter) {
+		if (count <= 0 || candidates.length == 0)
+			return new InfectionResult[0];
+		int leaf = (int) Math.max(1, GRAIN / Math.max(1, users));
+		return graph.shared(() -> pool.invoke(new ScoreTask(graph, users, 
+				count, candidates, leaf, 0, candidates.length, counter)));
+	}
+
+	/**
+	 * Compares two scores (best first)
+	 * @param a the first score
+	 * @param b the second score
+	 * @return a negative number if a is better, positive if b is better
+	 */
+	private static int compare(InfectionResult a, InfectionResult b) {
+		if (a.infected() != b.infected())
+			return Integer.compare(b.infected(), a.infected());
+		if (a.splitPairs() != b.splitPairs())
+			return Integer.compare(a.splitPairs(), b.splitPairs());
+		return Integer.compare(a.seed(), b.seed());
+	}
+
+	/**
+	 * Merges two rankings into the best of both
+	 * @param a the first ranking (best first)
+	 * @param b the second ranking (best first)
+	 * @param count the maximum number of seeds to keep
+	 * @return the merged ranking
+	 */
+	private static InfectionResult[] merge(InfectionResult[] a, 
+			InfectionResult[] b, int count) {
+		InfectionResult[] merged = new InfectionResult[
+				Math.min(count, a.length + b.length)];
+		int i = 0, j = 0;
+		for (int k = 0; k < merged.length; k++)
+			merged[k] = j == b.length || i < a.length && 
+				compare(a[i], b[j]) <= 0 ? a[i++] : b[j++];
+		return merged;
+	}
+
+	/**
+	 * Task scoring a range of candidates
+	 */
+	private static class ScoreTask extends RecursiveTask<InfectionResult[]> {
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * User base
+		 */
+		private final UserGraph graph;
+
+		/**
+		 * Number of users to infect
+		 */
+		private final int users;
+
+		/**
+		 * Maximum number of seeds to keep
+		 */
+		private final int count;
+
+		/**
+		 * Users to score
+		 */
+		private final int[] candidates;
+
+		/**
+		 * Maximum number of candidates scored by a single task
+		 */
+		private final int leaf;
+
+		/**
+		 * Range of candidates of this task
+		 */
+		private final int from, to;
+
+		/**
+		 * Counter of the work of the scoring (or null)
+		 */
+		private final TraversalCounter counter;
+
+		private ScoreTask(UserGraph graph, int users, int count, 
+				int[] candidates, int leaf, int from, int to, 
+				TraversalCounter counter) {
+			this.graph = graph;
+			this.users = users;
+			this.count = count;
+			this.candidates = candidates;
+			this.leaf = leaf;
+			this.from = from;
+			this.to = to;
+			this.counter = counter;
+		}
+
+		@Override
+		protected InfectionResult[] compute() {
+			if (to - from > leaf) {
+				int mid = (from + to) >>> 1;
+				ScoreTask left = new ScoreTask(graph, users, count, candidates,
+						leaf, from, mid, counter);
+				ScoreTask right = new ScoreTask(graph, users, count, 
+						candidates, leaf, mid, to, counter);
+				left.fork();
+				InfectionResult[] best = right.compute();
+				return merge(left.join(), best, count);
+			}
+
+			return graph.traverse(this::score);
+		}
+
+		/**
+		 * Scores the candidates of this task
+		 * @param traversal the traversal engine to score with
+		 * @return the best scores, best first
+		 */
+		private InfectionResult[] score(Traversal traversal) {
+			// keep the best scores of the range sorted by insertion
+			InfectionResult[] best = new InfectionResult[
+					Math.min(count, to - from)];
+			int size = 0;
+			for (int i = from; i < to; i++) {
+				int seed = candidates[i];
+				InfectionResult score = traversal.scoreInfect(seed, 
+						graph.version(seed)+1, users, counter);
+				if (size == best.length && 
+						compare(score, best[size-1]) >= 0)
+					continue;
+				int j = size == best.length ? size - 1 : size++;
+				for (; j > 0 && compare(score, best[j-1]) < 0; j--)
+					best[j] = best[j-1];
+				best[j] = score;
+			}
+			return best;
+		}
+	}
+
+}
@@ -0,0 +1,339 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Lock;
+
+import com.ram.kainterview.Error;
+
+/**
+ * Binary snapshot of a user base.
+ * A snapshot is a header (magic number, format version, number of users, 
+ * number of relations and number of bytes of the external ids, or -1 if the
+ * users have none) followed by the int arrays of the model: the version of 
+ * each user, then the number of students of each user and all students in 
+ * user order, then the same for the coaches. The external ids follow as the
+ * start of the id of each user (and the end of the last one) and the bytes
+ * of all ids. All ints are little-endian. Reading maps the file into memory 
+ * and bulk-copies each array onto the heap (the model grows its arrays as 
+ * relations change, so it cannot keep serving the mapped file), so reading 
+ * costs a linear copy and a linear check but no sorting or per-user 
+ * allocation (only the hash table of the ids is rebuilt). The check rejects
+ * out-of-range users and coaches that are not the transpose of the 
+ * students.
+ */
+public final class Snapshot {
+
+	/**
+	 * Magic number at the start of every snapshot ("INFS")
+	 */
+	private static final int MAGIC = 0x494E4653;
+
+	/**
+	 * Version of the snapshot format
+	 */
+	private static final int FORMAT = 2;
+
+	/**
+	 * Size of the header in bytes
+	 */
+	private static final int HEADER = 5*4;
+
+	/**
+	 * Size of the write buffer in bytes
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Maximum number of ints mapped at once
+	 */
+	private static final int WINDOW = 1 << 26;
+
+	// prevents instantiation
+	private Snapshot() { }
+
+	/**
+	 * Writes a snapshot of a user base (relations and versions cannot change 
+	 * meanwhile)
+	 * @param graph the user base
+	 * @param path the path of the snapshot (created or truncated)
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(UserGraph graph, Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, 
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			Lock lock = graph.topology().writeLock();
+			lock.lock();
+			try {
+				Output out = new Output(channel);
+				int size = graph.size();
+				IdDictionary ids = graph.externalIds();
+				out.putInt(MAGIC);
+				out.putInt(FORMAT);
+				out.putInt(size);
+				out.putInt(graph.relations());
+				out.putInt(ids == null ? -1 : ids.offset(size));
+				for (int u = 0; u < size; u++)
+					out.putInt(graph.version(u));
+
+				for (int u = 0; u < size; u++)
+					out.putInt(graph.numStudents(u));
+				for (int u = 0; u < size; u++)
+					for (int i = graph.studentStart(u); i < graph.studentEnd(u); 
+							i++)
+						out.putInt(graph.studentAt(i));
+
+				for (int u = 0; u < size; u++)
+					out.putInt(graph.numCoaches(u));
+				for (int u = 0; u < size; u++)
+					for (int i = graph.coachStart(u); i < graph.coachEnd(u); i++)
+						out.putInt(graph.coachAt(i));
+
+				if (ids != null) {
+					for (int u = 0; u <= size; u++)
+						out.putInt(ids.offset(u));
+					out.put(ids.arena(), 0, ids.offset(size));
+				}
+				out.flush();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Reads a user base from a snapshot
+	 * @param path the path of the snapshot
+	 * @return the user base
+	 * @throws IOException if the file cannot be read or is not a valid 
+	 * snapshot
+	 */
+	public static UserGraph read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, 
+				StandardOpenOption.READ)) {
+			if (channel.size() < HEADER)
+				throw new IOException(Error.SNAPSHOT.toString());
+			int[] header = new int[HEADER/4];
+			read(channel, 0, header);
+			int size = header[2];
+			int relations = header[3];
+			int idBytes = header[4];
+			long length = HEADER + 4L*(3L*size + 2L*relations);
+			if (idBytes >= 0)
+				length += 4L*(size + 1L) + idBytes;
+			if (header[0] != MAGIC || header[1] != FORMAT || size < 0 || 
+					relations < 0 || idBytes < -1 || channel.size() != length)
+				throw new IOException(Error.SNAPSHOT.toString());
+
+			long position = HEADER;
+			int[] versions = new int[size];
+			position = read(channel, position, versions);
+			int[] numStudents = new int[size];
+			position = read(channel, position, numStudents);
+			int[] students = new int[relations];
+			position = read(channel, position, students);
+			int[] numCoaches = new int[size];
+			position = read(channel, position, numCoaches);
+			int[] coaches = new int[relations];
+			position = read(channel, position, coaches);
+
+			IdDictionary ids = null;
+			if (idBytes >= 0) {
+				int[] offsets = new int[size + 1];
+				position = read(channel, position, offsets);
+				byte[] bytes = new byte[idBytes];
+				read(channel, position, bytes);
+				ids = IdDictionary.of(bytes, offsets);
+				if (ids == null)
+					throw new IOException(Error.SNAPSHOT.toString());
+			}
+
+			check(numStudents, students, size);
+			check(numCoaches, coaches, size);
+			checkTranspose(numStudents, students, numCoaches, coaches);
+			return new UserGraph(versions, new Adjacency(numStudents, students),
+					new Adjacency(numCoaches, coaches), ids);
+		}
+	}
+
+	/**
+	 * Copies consecutive ints of a file into an array through memory-mapped
+	 * windows
+	 * @param channel the file
+	 * @param position the position of the first int in bytes
+	 * @param into the array to fill
+	 * @return the position after the last int read
+	 * @throws IOException if the file cannot be read
+	 */
+	private static long read(FileChannel channel, long position, int[] into) 
+			throws IOException {
+		for (int offset = 0; offset < into.length; ) {
+			int length = Math.min(WINDOW, into.length - offset);
+			IntBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, 
+					position, 4L*length).order(ByteOrder.LITTLE_ENDIAN)
+					.asIntBuffer();
+			window.get(into, offset, length);
+			offset += length;
+			position += 4L*length;
+		}
+		return position;
+	}
+
+	/**
+	 * Copies consecutive bytes of a file into an array through memory-mapped
+	 * windows
+	 * @param channel the file
+	 * @param position the position of the first byte
+	 * @param into the array to fill
+	 * @throws IOException if the file cannot be read
+	 */
+	private static void read(FileChannel channel, long position, byte[] into)
+			throws IOException {
+		for (int offset = 0; offset < into.length; ) {
+			int length = Math.min(4*WINDOW, into.length - offset);
+			channel.map(FileChannel.MapMode.READ_ONLY, position, length)
+					.get(into, offset, length);
+			offset += length;
+			position += length;
+		}
+	}
+
+	/**
+	 * Checks that an adjacency read from a snapshot is consistent
+	 * @param count the number of targets of each user
+	 * @param targets the targets of all users
+	 * @param size the number of users
+	 * @throws IOException if the adjacency is not consistent
+	 */
+	private static void check(int[] count, int[] targets, int size) 
+			throws IOException {
+		long total = 0;
+		for (int c : count) {
+			if (c < 0)
+				throw new IOException(Error.SNAPSHOT.toString());
+			total += c;
+		}
+		if (total != targets.length)
+			throw new IOException(Error.SNAPSHOT.toString());
+		for (int target : targets)
+			if (target < 0 || target >= size)
+				throw new IOException(Error.SNAPSHOT.toString());
+	}
+
+	/**
+	 * Checks that the coaches read from a snapshot are the transpose of the 
+	 * students: every user is the student of as many relations as it has 
+	 * coaches, and a hash of the relations summed over both directions 
+	 * matches
+	 * @param numStudents the number of students of each user
+	 * @param students the students of all users
+	 * @param numCoaches the number of coaches of each user
+	 * @param coaches the coaches of all users
+	 * @throws IOException if the directions do not match
+	 */
+	private static void checkTranspose(int[] numStudents, int[] students, 
+			int[] numCoaches, int[] coaches) throws IOException {
+		int[] studentOf = new int[numCoaches.length];
+		long sum = 0;
+		int i = 0;
+		for (int u = 0; u < numStudents.length; u++)
+			for (int end = i + numStudents[u]; i < end; i++) {
+				studentOf[students[i]]++;
+				sum += Adjacency.hash(u, students[i]);
+			}
+		i = 0;
+		for (int u = 0; u < numCoaches.length; u++) {
+			if (studentOf[u] != numCoaches[u])
+				throw new IOException(Error.SNAPSHOT.toString());
+			for (int end = i + numCoaches[u]; i < end; i++)
+				sum -= Adjacency.hash(coaches[i], u);
+		}
+		if (sum != 0)
+			throw new IOException(Error.SNAPSHOT.toString());
+	}
+
+	/**
+	 * Buffered little-endian writer of ints to a file
+	 */
+	private static class Output {
+
+		/**
+		 * Output file
+		 */
+		private final FileChannel channel;
+
+		/**
+		 * Output buffer
+		 */
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE)
+				.order(ByteOrder.LITTLE_ENDIAN);
+
+		private Output(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Writes an int
+		 * @param value the value
+		 * @throws IOException if the file cannot be written
+		 */
+		private void putInt(int value) throws IOException {
+			if (buffer.remaining() < 4)
+				flush();
+			buffer.putInt(value);
+		}
+
+		/**
+		 * Writes bytes
+		 * @param bytes the array holding the bytes
+		 * @param from the start of the bytes
+		 * @param to the end of the bytes
+		 * @throws IOException if the file cannot be written
+		 */
+		private void put(byte[] bytes, int from, int to) throws IOException {
+			while (from < to) {
+				if (!buffer.hasRemaining())
+					flush();
+				int length = Math.min(buffer.remaining(), to - from);
+				buffer.put(bytes, from, length);
+				from += length;
+			}
+		}
+
+		/**
+		 * Writes the buffer to the file
+		 * @throws IOException if the file cannot be written
+		 */
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+
+	}
+
+}
@@ -0,0 +1,416 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Iterative traversal engine for the infection algorithms.
+ * Replaces the recursion per user with an explicit work deque so that deep 
+ * coach-student chains cannot overflow the thread stack. The deque and the 
+ * visited marks are reused across calls, so an engine is NOT thread-safe 
+ * (see {@link UserGraph#traverse} to borrow one from the user base). The 
+ * infections that change versions are only reachable through 
+ * {@link User}, which runs them inside {@link UserGraph#infect} so that they
+ * are locked and observed by the version listeners.
+ */
+public class Traversal {
+
+	/**
+	 * User base to traverse
+	 */
+	private final UserGraph graph;
+
+	/**
+	 * Reusable work deque of pending users
+	 */
+	private final IntDeque work;
+
+	/**
+	 * Reusable queue of the coaches waiting for the students to be exhausted
+	 * (exact limited infection only)
+	 */
+	private final IntDeque coachWork;
+
+	/**
+	 * Visited marks of the users (a user is visited in the current traversal 
+	 * iff its mark equals the current epoch)
+	 */
+	private int[] marks;
+
+	/**
+	 * Epoch of the current traversal
+	 */
+	private int epoch;
+
+	/**
+	 * Number of users visited and of relations scanned by the current 
+	 * infection (added to its counter when it ends)
+	 */
+	private long visited, edges;
+
+	/**
+	 * Constructs a traversal engine for the given user base
+	 * @param graph the user base
+	 */
+	public Traversal(UserGraph graph) {
+		this.graph = graph;
+		work = new IntDeque();
+		coachWork = new IntDeque();
+	}
+
+	/**
+	 * Performs limited infection on the given user with the new version number
+	 * (same policy as the recursive formulation: each user infects its 
+	 * students and then its coaches with the number of users remaining at 
+	 * that point, and then the infection continues from the students and then
+	 * from the coaches)
+	 * @param user the index of the user
+	 * @param version the new version number
+	 * @param users the number of users to infect
+	 * @return true if the users connected components are already on the same 
+	 * version (i.e. terminate infection), false otherwise
+	 */
+	boolean limitedInfect(int user, int version, int users) {
+		return limitedInfect(user, version, users, null);
+	}
+
+	/**
+	 * Performs limited infection on the given user with the new version number
+	 * and counts its work
+	 * @param user the index of the user
+	 * @param version the new version number
+	 * @param users the number of users to infect
+	 * @param counter the counter of the work of the infection (or null)
+	 * @return true if the users connected components are already on the same 
+	 * version (i.e. terminate infection), false otherwise
+	 */
+	boolean limitedInfect(int user, int version, int users, 
+			TraversalCounter counter) {
+		work.clear();
+		visited = edges = 0;
+
+		int remaining = infectNeighbours(user, version, users);
+		if (remaining <= 0) {
+			TraversalCounter.add(counter, visited, edges);
+			return true;
+		}
+		push(user, remaining);
+
+		// each frame is a (user, remaining users) pair pushed in reverse order
+		// so that frames are popped in the same order as the recursive calls
+		while (!work.isEmpty()) {
+			int left = work.pollLast();
+			int cur = work.pollLast();
+			int next = infectNeighbours(cur, version, left);
+			if (next > 0)
+				push(cur, next);
+		}
+		TraversalCounter.add(counter, visited, edges);
+		return false;
+	}
+
+	/**
+	 * Infects exactly the given number of users (or the whole connected 
+	 * component if it has fewer users to change) with one bounded breadth-
+	 * first search that prefers students over coaches: a coach is only 
+	 * reached once every user reachable through students so far is infected
+	 * (see README). Users already on the new version are passed through 
+	 * without being counted. Runs in O(users + relations touched).
+	 * @param user the index of the user to start from
+	 * @param version the new version number
+	 * @param users the number of users to infect
+	 * @return the number of users infected and of pairs split
+	 */
+	InfectionResult exactInfect(int user, int version, int users) {
+		return exact(user, version, users, true, null);
+	}
+
+	/**
+	 * Infects exactly the given number of users like 
+	 * {@link #exactInfect(int, int, int)} and counts its work
+	 * @param user the index of the user to start from
+	 * @param version the new version number
+	 * @param users the number of users to infect
+	 * @param counter the counter of the work of the infection (or null)
+	 * @return the number of users infected and of pairs split
+	 */
+	InfectionResult exactInfect(int user, int version, int users, 
+			TraversalCounter counter) {
+		return exact(user, version, users, true, counter);
+	}
+
+	/**
+	 * Computes the outcome of {@link #exactInfect(int, int, int)} without 
+	 * changing any version
+	 * @param user the index of the user to start from
+	 * @param version the new version number
+	 * @param users the number of users to infect
+	 * @return the number of users that would be infected and of pairs that 
+	 * would be split
+	 */
+	public InfectionResult scoreInfect(int user, int version, int users) {
+		return exact(user, version, users, false, null);
+	}
+
+	/**
+	 * Computes the outcome of {@link #exactInfect(int, int, int)} without 
+	 * changing any version and counts its work
+	 * @param user the index of the user to start from
+	 * @param version the new version number
+	 * @param users the number of users to infect
+	 * @param counter the counter of the work of the scoring (or null)
+	 * @return the number of users that would be infected and of pairs that 
+	 * would be split
+	 */
+	public InfectionResult scoreInfect(int user, int version, int users, 
+			TraversalCounter counter) {
+		return exact(user, version, users, false, counter);
+	}
+
+	/**
+	 * Runs the bounded search of exact limited infection. A user joins the 
+	 * infected set when it is dequeued (a user may be queued once per 
+	 * relation, so a user found through a student relation after being 
+	 * queued as a coach still gets the student priority). The split pairs are
+	 * maintained as users join: a pair is split when it has one end in the 
+	 * set and the other end outside it on another version.
+	 * @param user the index of the user to start from
+	 * @param version the new version number
+	 * @param users the number of users to infect
+	 * @param apply true to change the versions, false to only score them
+	 * @param counter the counter of the work of the search (or null)
+	 * @return the number of users infected and of pairs split
+	 */
+	private InfectionResult exact(int user, int version, int users, 
+			boolean apply, TraversalCounter counter) {
+		int mark = nextEpoch();
+		int infected = 0;
+		int split = 0;
+		visited = edges = 0;
+		work.clear();
+		coachWork.clear();
+		if (users > 0)
+			work.addLast(user);
+
+		while (infected < users) {
+			int cur;
+			if (!work.isEmpty())
+				cur = work.pollFirst();
+			else if (!coachWork.isEmpty())
+				cur = coachWork.pollFirst();
+			else
+				break;
+			if (marks[cur] == mark)
+				continue;
+			marks[cur] = mark;
+			visit(cur);
+
+			// a pair with a user already in the set stops being split if this
+			// user was on another version, and a pair with a user outside the
+			// set becomes split if that user is on another version
+			boolean changes = graph.version(cur) != version;
+			for (int i = graph.studentStart(cur); i < graph.studentEnd(cur); 
+					i++) {
+				int student = graph.studentAt(i);
+				if (marks[student] == mark) {
+					if (changes)
+						split--;
+				} else {
+					if (graph.version(student) != version)
+						split++;
+					work.addLast(student);
+				}
+			}
+			for (int i = graph.coachStart(cur); i < graph.coachEnd(cur); i++) {
+				int coach = graph.coachAt(i);
+				if (marks[coach] == mark) {
+					if (changes)
+						split--;
+				} else {
+					if (graph.version(coach) != version)
+						split++;
+					coachWork.addLast(coach);
+				}
+			}
+
+			if (changes) {
+				if (apply)
+					graph.setVersion(cur, version);
+				infected++;
+			}
+		}
+		TraversalCounter.add(counter, visited, edges);
+		return new InfectionResult(user, infected, split);
+	}
+
+	/**
+	 * Infects the given user and its direct students and coaches
+	 * @param user the index of the user
+	 * @param version the new version number
+	 * @param users the number of users to infect
+	 * @return the number of users remaining for the infection to continue 
+	 * from this user, or 0 if the infection terminates at this user
+	 */
+	private int infectNeighbours(int user, int version, int users) {
+		// terminate infection at this point in graph if # of users is depleted
+		if (users <= 0)
+			return 0;
+		visit(user);
+
+		if (graph.version(user) != version) {
+			graph.setVersion(user, version);
+			users--;
+		}
+
+		// terminate infection at this point in graph if # of users is depleted
+		if (users <= 0)
+			return 0;
+
+		boolean completed = true;
+
+		for (int i = graph.studentStart(user); i < graph.studentEnd(user); 
+				i++) {
+			int student = graph.studentAt(i);
+			int current = graph.version(student);
+			if (current != version) {
+				// only change version if the number of users is not depleted
+				// OR the version change is an upgrade because we do not want 
+				// students to be left out of upgrades (see README).
+				if (users > 0 || users <= 0 && version > current) {
+					graph.setVersion(student, version);
+					users--;
+					completed = false;
+				}
+			}
+		}
+
+		// terminate infection at this point in graph if # of users is depleted
+		if (users <= 0)
+			return 0;
+
+		for (int i = graph.coachStart(user); i < graph.coachEnd(user); i++) {
+			int coach = graph.coachAt(i);
+			// only change version if the number of users is not depleted
+			if (graph.version(coach) != version && users > 0) {
+				graph.setVersion(coach, version);
+				users--;
+				completed = false;
+			}
+		}
+
+		// terminate infection if connected components are on the same version
+		return completed ? 0 : users;
+	}
+
+	/**
+	 * Pushes the continuation frames of the given user (students first, then 
+	 * coaches once popped)
+	 * @param user the index of the user
+	 * @param users the number of users remaining
+	 */
+	private void push(int user, int users) {
+		for (int i = graph.coachEnd(user) - 1; i >= graph.coachStart(user); 
+				i--) {
+			work.addLast(graph.coachAt(i));
+			work.addLast(users);
+		}
+		for (int i = graph.studentEnd(user) - 1; 
+				i >= graph.studentStart(user); i--) {
+			work.addLast(graph.studentAt(i));
+			work.addLast(users);
+		}
+	}
+
+	/**
+	 * Determines the size of the graph of the users connected to the given 
+	 * user as coaches or students
+	 * @param user the index of the user
+	 * @return the size of the graph
+	 */
+	public int graphSize(int user) {
+		return forEachConnected(user, u -> { });
+	}
+
+	/**
+	 * Performs an action on every user connected to the given user as coaches
+	 * or students (including the user itself)
+	 * @param user the index of the user
+	 * @param action the action
+	 * @return the number of users connected to the user
+	 */
+	public int forEachConnected(int user, IntConsumer action) {
+		int mark = nextEpoch();
+		int count = 1;
+		work.clear();
+
+		marks[user] = mark;
+		work.addLast(user);
+
+		while (!work.isEmpty()) {
+			int cur = work.pollLast();
+			action.accept(cur);
+			for (int i = graph.studentStart(cur); i < graph.studentEnd(cur); 
+					i++) {
+				int student = graph.studentAt(i);
+				if (marks[student] != mark) {
+					marks[student] = mark;
+					count++;
+					work.addLast(student);
+				}
+			}
+			for (int i = graph.coachStart(cur); i < graph.coachEnd(cur); i++) {
+				int coach = graph.coachAt(i);
+				if (marks[coach] != mark) {
+					marks[coach] = mark;
+					count++;
+					work.addLast(coach);
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Counts a visit of a user and the scan of its relations
+	 * @param user the index of the user
+	 */
+	private void visit(int user) {
+		visited++;
+		edges += graph.numStudents(user) + graph.numCoaches(user);
+	}
+
+	/**
+	 * Starts a new epoch of visited marks (the marks array is only cleared 
+	 * when the epoch counter wraps around)
+	 * @return the mark of the new epoch
+	 */
+	private int nextEpoch() {
+		if (marks == null || marks.length != graph.size()) {
+			marks = new int[graph.size()];
+			epoch = 0;
+		}
+		if (++epoch == 0) {
+			Arrays.fill(marks, 0);
+			epoch = 1;
+		}
+		return epoch;
+	}
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter of the work of an infection: the users it visited and the 
+ * coach-student relations it scanned.
+ * A counter is passed explicitly to the engines that run the infection (the
+ * sequential and parallel traversals, batch infection and seed scoring), so
+ * it counts the work of every thread of the infection and only that work: 
+ * traversals made by the observers of the versions are not counted. A total
+ * infection moves its component without a traversal and counts every user 
+ * of the component as visited without scanning any relation. Counters may 
+ * be updated from several threads at once.
+ */
+public final class TraversalCounter {
+
+	/**
+	 * Number of users visited
+	 */
+	private final LongAdder visited = new LongAdder();
+
+	/**
+	 * Number of relations scanned
+	 */
+	private final LongAdder edges = new LongAdder();
+
+	/**
+	 * Gets the number of users visited
+	 * @return the number of users
+	 */
+	public long visited() {
+		return visited.sum();
+	}
+
+	/**
+	 * Gets the number of coach-student relations scanned (each relation is 
+	 * scanned from both of its users)
+	 * @return the number of relations
+	 */
+	public long edgesTraversed() {
+		return edges.sum();
+	}
+
+	/**
+	 * Counts the work of part of an infection
+	 * @param users the number of users visited
+	 * @param relations the number of relations scanned
+	 */
+	void add(long users, long relations) {
+		visited.add(users);
+		edges.add(relations);
+	}
+
+	/**
+	 * Counts the work of part of an infection (if there is a counter)
+	 * @param counter the counter, or null
+	 * @param users the number of users visited
+	 * @param relations the number of relations scanned
+	 */
+	static void add(TraversalCounter counter, long users, long relations) {
+		if (counter != null)
+			counter.add(users, relations);
+	}
+
+}
@@ -17,51 +17,36 @@
  */
 package com.ram.kainterview.user;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+
+import com.ram.kainterview.Error;
 
 /**
- * Represents an individual user of the software
+ * Represents an individual user of the software as a thin view over the 
+ * {@link UserGraph} that stores the user base
  * Total Infection Invariant: version number of this user and all coaches and 
  * students are equal
  */
 public class User {
 
 	/**
-	 * Version that this user sees (base version = 0)
+	 * User base that stores this user
 	 */
-	private int version;
+	private final UserGraph graph;
 
 	/**
-	 * Unique identifier for this user
+	 * Index of this user in the user base
 	 */
-	private String id;
+	private final int index;
 
 	/**
-	 * Contains all of the coaches of this user.
-	 * This List is empty if the user is not a student of any coaches.
+	 * Constructs a view of the user at the given index of the user base
+	 * @param graph the user base
+	 * @param index the index of the user
 	 */
-	private List<User> coaches;
-
-	/**
-	 * Contains all the students of this user.
-	 * This List is empty if this user is not a coach of any students.
-	 */
-	private List<User> students;
-
-	/**
-	 * Default constructor of a user with the base version and no students or 
-	 * coaches
-	 */
-	public User() {
-		version = 0;
-		id = UUID.randomUUID().toString();
-		coaches = new LinkedList<>();
-		students = new LinkedList<>();
+	User(UserGraph graph, int index) {
+		this.graph = graph;
+		this.index = index;
 	}
 
 	/**
@@ -70,45 +55,78 @@ public class User {
 	 * @return true of the invariant holds, false otherwise
 	 */
 	private boolean classInv() {
-		for (User coach : coaches)
-			if (this.version != coach.version)
+		int version = graph.version(index);
+		for (int i = graph.coachStart(index); i < graph.coachEnd(index); i++)
+			if (version != graph.version(graph.coachAt(i)))
 				return false;
-		for (User student : students)
-			if (this.version != student.version)
+		for (int i = graph.studentStart(index); i < graph.studentEnd(index); 
+				i++)
+			if (version != graph.version(graph.studentAt(i)))
 				return false;
 		return true;
 	}
 
+	/**
+	 * Gets a read-only version of the list of coaches
+	 * @return the list of coaches
+	 */
+	public List<User> coaches() {
+		return graph.coachesOf(index);
+	}
+
+	/**
+	 * Gets a read-only version of the list of students
+	 * @return the list of students
+	 */
+	public List<User> students() {
+		return graph.studentsOf(index);
+	}
+
 	/**
 	 * Adds a coach to this user
-	 * @param coach the coach
+	 * @param coach the coach (requires: in the same user base)
+	 * @return true if the relation was added, false if it already existed
 	 */
-	protected void addCoach(User coach) {
-		coaches.add(coach);
+	public boolean addCoach(User coach) {
+		return graph.addRelation(sameGraph(coach), index);
 	}
 
 	/**
 	 * Adds a student to this user
-	 * @param student the student
+	 * @param student the student (requires: in the same user base)
+	 * @return true if the relation was added, false if it already existed
 	 */
-	protected void addStudent(User student) {
-		students.add(student);
+	public boolean addStudent(User student) {
+		return graph.addRelation(index, sameGraph(student));
 	}
 
 	/**
-	 * Gets a read-only version of the list of coaches
-	 * @return the list of coaches
+	 * Removes a coach from this user
+	 * @param coach the coach (requires: in the same user base)
+	 * @return true if the relation was removed, false if it did not exist
 	 */
-	public List<User> coaches() {
-		return Collections.unmodifiableList(coaches);
+	public boolean removeCoach(User coach) {
+		return graph.removeRelation(sameGraph(coach), index);
 	}
 
 	/**
-	 * Gets a read-only version of the list of students
-	 * @return the list of students
+	 * Removes a student from this user
+	 * @param student the student (requires: in the same user base)
+	 * @return true if the relation was removed, false if it did not exist
 	 */
-	public List<User> students() {
-		return Collections.unmodifiableList(students);
+	public boolean removeStudent(User student) {
+		return graph.removeRelation(index, sameGraph(student));
+	}
+
+	/**
+	 * Checks that another user belongs to the same user base as this user
+	 * @param other the other user
+	 * @return the index of the other user
+	 */
+	private int sameGraph(User other) {
+		if (other.graph != graph)
+			throw new IllegalArgumentException(Error.USER_BASE.toString());
+		return other.index;
 	}
 
 	/**
@@ -116,7 +134,7 @@ public class User {
 	 * @return the number of coaches
 	 */
 	protected int numCoaches() {
-		return coaches.size();
+		return graph.numCoaches(index);
 	}
 
 	/**
@@ -124,15 +142,35 @@ public class User {
 	 * @return the number of students
 	 */
 	protected int numStudents() {
-		return students.size();
+		return graph.numStudents(index);
 	}
 
 	/**
-	 * Gets the id of this user
+	 * Gets the id of this user (its dense index in its user base)
 	 * @return the id
 	 */
-	public String id() {
-		return id;
+	public int id() {
+		return index;
+	}
+
+	/**
+	 * Gets the external id of this user (such as its id in an imported 
+	 * roster)
+	 * @return the external id, or the id as a string if the user base has no
+	 * external ids
+	 */
+	public String externalId() {
+		IdDictionary externalIds = graph.externalIds();
+		return externalIds == null ? Integer.toString(index) : 
+			externalIds.get(index);
+	}
+
+	/**
+	 * Gets the user base that stores this user
+	 * @return the user base
+	 */
+	public UserGraph graph() {
+		return graph;
 	}
 
 	/**
@@ -140,7 +178,7 @@ public class User {
 	 * @return the version number
 	 */
 	public int version() {
-		return version;
+		return graph.version(index);
 	}
 
 	/**
@@ -148,16 +186,25 @@ public class User {
 	 * @param version the new version number
 	 */
 	public void totalInfect(int version) {
-		this.version = version;
-		for (User coach : coaches)
-			if (coach.version != version)
-				coach.totalInfect(version);
+		totalInfect(version, null);
+	}
 
-		for (User student : students)
-			if (student.version != version)
-				student.totalInfect(version);
+	/**
+	 * Performs total infection from this user with the new version number and
+	 * counts its work (every user of the component is visited)
+	 * @param version the new version number
+	 * @param counter the counter of the work of the infection (or null)
+	 */
+	public void totalInfect(int version, TraversalCounter counter) {
+		graph.infect(index, () -> {
+			ComponentIndex components = graph.components();
+			TraversalCounter.add(counter, 
+					components.size(components.componentOf(index)), 0);
+			graph.setComponentVersion(index, version);
 
-		assert classInv();
+			assert classInv();
+			return null;
+		});
 	}
 
 	/**
@@ -168,112 +215,73 @@ public class User {
 	 * version (i.e. terminate infection), false otherwise
 	 */
 	public boolean limitedInfect(int version, int users) {
-		// terminate infection at this point in graph if # of users is depleted
-		if (users <= 0)
-			return true;
-
-		if (this.version != version) {
-			this.version = version;
-			users--;
-		}
-		
-		// terminate infection at this point in graph if # of users is depleted
-		if (users <= 0)
-			return true;
+		return limitedInfect(version, users, null);
+	}
 
-		boolean completed = true;
-		
-		for (User student : students) {
-			if (student.version != version) {
-				// only change version if the number of users is not depleted
-				// OR the version change is an upgrade because we do not want 
-				// students to be left out of upgrades (see README).
-				if (users > 0 || users <= 0 && version > student.version) {
-					student.version = version;
-					users--;
-					completed = false;
-				}
-			}
-		}
-		
-		// terminate infection at this point in graph if # of users is depleted
-		if (users <= 0)
-			return true;
-		
-		for (User coach : coaches) {
-			// only change version if the number of users is not depleted
-			if (coach.version != version && users > 0) {
-				coach.version = version;
-				users--;
-				completed = false;
-			}
-		}
-		
-		// terminate infection if connected components are on the same version
-		if (completed)
-			return true;
-		
-		// terminate infection at this point in graph if # of users is depleted
-		if (users <= 0)
-			return true;
-		
-		// continue infection to students first
-		for (User student : students)
-			student.limitedInfect(version, users);
-		
-		// terminate infection at this point in graph if # of users is depleted
-		if (users <= 0)
-			return true;
+	/**
+	 * Performs limited infection on this user with the new version number and
+	 * counts its work
+	 * @param version the new version number
+	 * @param users the number of users to infect
+	 * @param counter the counter of the work of the infection (or null)
+	 * @return true if the users connected components are already on the same 
+	 * version (i.e. terminate infection), false otherwise
+	 */
+	public boolean limitedInfect(int version, int users, 
+			TraversalCounter counter) {
+		return graph.infect(index, () -> graph.traverse(traversal -> 
+				traversal.limitedInfect(index, version, users, counter)));
+	}
 
-		// ... then proceed to coaches
-		for (User coach : coaches)
-			coach.limitedInfect(version, users);
-		
-		return false;
+	/**
+	 * Performs limited infection from this user on exactly the given number 
+	 * of users (fewer only if its connected component has fewer users to 
+	 * change), preferring students over coaches
+	 * @param version the new version number
+	 * @param users the number of users to infect
+	 * @return the number of users infected and of coach-student pairs split
+	 */
+	public InfectionResult exactInfect(int version, int users) {
+		return exactInfect(version, users, null);
 	}
-	
+
 	/**
-	 * Determines the size of the graph of the users connected to this user as
-	 * coaches or students with a depth-first traversal in each direction (both
-	 * to coaches and to students)
-	 * @return the size of the graph
+	 * Performs exact limited infection from this user like 
+	 * {@link #exactInfect(int, int)} and counts its work
+	 * @param version the new version number
+	 * @param users the number of users to infect
+	 * @param counter the counter of the work of the infection (or null)
+	 * @return the number of users infected and of coach-student pairs split
 	 */
-	public int graphSize() {
-		int count = 1;
-		
-		Map<String, User> users = new HashMap<String, User>();
-		users.put(this.id, this);
-		
-		for (User student : students)
-			count+=student.graphSize(users);
-		
-		for (User coach : coaches)
-			count+=coach.graphSize(users);
-		
-		return count;
+	public InfectionResult exactInfect(int version, int users, 
+			TraversalCounter counter) {
+		return graph.infect(index, () -> graph.traverse(traversal -> 
+				traversal.exactInfect(index, version, users, counter)));
 	}
 	
 	/**
 	 * Determines the size of the graph of the users connected to this user as
-	 * coaches or students with a depth-first traversal in each direction (both
-	 * to coaches and to students)
-	 * @param users map of users already processed for the graph size
+	 * coaches or students (both to coaches and to students)
 	 * @return the size of the graph
 	 */
-	private int graphSize(Map<String,User> users) {
-		int count = 1;
-		
-		users.put(this.id, this);
-		
-		for (User student : students)
-			if (!users.containsKey(student.id))
-				count+=student.graphSize(users);
-		
-		for (User coach : coaches)
-			if (!users.containsKey(coach.id))	
-				count+=coach.graphSize(users);
-		
-		return count;
+	public int graphSize() {
+		return graph.shared(() -> {
+			ComponentIndex components = graph.components();
+			return components.size(components.componentOf(index));
+		});
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof User))
+			return false;
+		User other = (User) o;
+		return graph == other.graph && index == other.index;
+	}
+
+	@Override
+	public int hashCode() {
+		return index;
 	}
 
 }
@@ -17,8 +17,12 @@
  */
 package com.ram.kainterview.user;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
 import com.ram.kainterview.Error;
 
@@ -33,6 +37,13 @@ public class UserGenerator {
 	 */
 	private static final double probability = 0.1;
 
+	/**
+	 * Number of top-level users generated by a single task of the seeded 
+	 * generator (fixed so that the output does not depend on the number of 
+	 * threads)
+	 */
+	private static final int BLOCK = 16;
+
 	// prevents instantiation
 	private UserGenerator() { }
 
@@ -45,6 +56,19 @@ public class UserGenerator {
 	 * @return list of all users in the graph of the user base
 	 */
 	public static List<User> generateUsers(int min, int maxStudents, int levels) {
+		return generateGraph(min, maxStudents, levels).users();
+	}
+
+	/**
+	 * Generates a random artificial user base given the specifications such as
+	 * the number of top-level users
+	 * @param min minimum number of users (requires: >= 1)
+	 * @param maxStudents maximum number of direct students per user
+	 * @param levels number of levels of coach-student relationships to generate
+	 * @return the graph of the user base
+	 */
+	public static UserGraph generateGraph(int min, int maxStudents, 
+			int levels) {
 		if (min < 1)
 			throw new IllegalArgumentException(Error.MIN_USERS.toString());
 		else if (maxStudents < 0)
@@ -52,55 +76,384 @@ public class UserGenerator {
 		else if (levels < 1)
 			throw new IllegalArgumentException(Error.LEVELS.toString());
 
-		List<User> users = new ArrayList<>(); // all users
+		UserGraph.Builder users = new UserGraph.Builder(); // all users
 
 		for (int i = 0; i < min; i++) {
-			User user = new User(); // create new user
-			users.add(user);
+			int user = users.addUser(); // create new user
 			populateUser(users,user,maxStudents,levels);
 		}
 
-		return users;
+		return users.build();
+	}
+
+	/**
+	 * Generates a reproducible random artificial user base in parallel.
+	 * Top-level users are split into fixed blocks which are generated in 
+	 * parallel with their own {@link SplittableRandom} split off a generator 
+	 * seeded with the given seed, so the same seed always yields the same user
+	 * base. Each block generates its users level by level (no recursion). 
+	 * Students reused from the existing users are resolved after all blocks 
+	 * are generated (uniformly among the users generated before them, as in 
+	 * the sequential generator) with a constant-time duplicate check; a 
+	 * reused student that is already a student of the coach is dropped.
+	 * @param min minimum number of users (requires: >= 1)
+	 * @param maxStudents maximum number of direct students per user
+	 * @param levels number of levels of coach-student relationships to generate
+	 * @param seed the seed of the random generator
+	 * @return the graph of the user base
+	 */
+	public static UserGraph generateGraph(int min, int maxStudents, 
+			int levels, long seed) {
+		if (min < 1)
+			throw new IllegalArgumentException(Error.MIN_USERS.toString());
+		else if (maxStudents < 0)
+			throw new IllegalArgumentException(Error.MAX_STUDENTS.toString());
+		else if (levels < 1)
+			throw new IllegalArgumentException(Error.LEVELS.toString());
+
+		// split the generators in block order so they do not depend on timing
+		int numBlocks = (min + BLOCK - 1) / BLOCK;
+		SplittableRandom root = new SplittableRandom(seed);
+		SplittableRandom[] randoms = new SplittableRandom[numBlocks];
+		for (int b = 0; b < numBlocks; b++)
+			randoms[b] = root.split();
+
+		Block[] blocks = new Block[numBlocks];
+		IntStream.range(0, numBlocks).parallel().forEach((b) -> {
+			blocks[b] = new Block(randoms[b], Math.min(BLOCK, min - b*BLOCK),
+					maxStudents, levels);
+		});
+
+		// place the blocks one after another
+		long[] offsets = new long[numBlocks+1];
+		long relations = 0;
+		for (int b = 0; b < numBlocks; b++) {
+			offsets[b+1] = offsets[b] + blocks[b].users;
+			relations += blocks[b].relations + blocks[b].reused;
+		}
+		if (offsets[numBlocks] > Integer.MAX_VALUE || 
+				relations > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(Error.TOO_MANY_USERS.toString());
+		int size = (int) offsets[numBlocks];
+
+		int[] coachIds = new int[(int) relations];
+		int[] studentIds = new int[(int) relations];
+		long[] positions = new long[numBlocks+1];
+		for (int b = 0; b < numBlocks; b++)
+			positions[b+1] = positions[b] + blocks[b].relations;
+		IntStream.range(0, numBlocks).parallel().forEach((b) -> {
+			Block block = blocks[b];
+			int offset = (int) offsets[b];
+			int position = (int) positions[b];
+			for (int i = 0; i < block.relations; i++) {
+				coachIds[position + i] = offset + block.coachIds[i];
+				studentIds[position + i] = offset + block.studentIds[i];
+			}
+		});
+
+		// resolve the reused students in block order, marking the students of
+		// each coach with the coach to detect duplicates in O(1)
+		int count = (int) positions[numBlocks];
+		int[] studentOf = new int[size];
+		Arrays.fill(studentOf, -1);
+		for (int b = 0; b < numBlocks; b++) {
+			Block block = blocks[b];
+			int offset = (int) offsets[b];
+			int position = (int) positions[b];
+			for (int i = 0; i < block.reused; i++) {
+				int coach = offset + block.reusedCoaches[i];
+				if (studentOf[coach] != coach) {
+					// first reuse of this coach: mark its new students
+					studentOf[coach] = coach;
+					for (int j = block.reusedFrom[i]; j < block.reusedTo[i]; j++)
+						studentOf[studentIds[position + j]] = coach;
+				}
+				int student = (int) (block.reusedPicks[i]*(offset + 
+						block.reusedBefore[i]));
+				if (studentOf[student] == coach)
+					continue;
+				studentOf[student] = coach;
+				coachIds[count] = coach;
+				studentIds[count] = student;
+				count++;
+			}
+		}
+
+		return new UserGraph(new int[size], coachIds, studentIds, count);
+	}
+
+	/**
+	 * Users and relations generated from a block of top-level users (indices 
+	 * are local to the block)
+	 */
+	private static class Block {
+
+		/**
+		 * Number of users generated
+		 */
+		private int users;
+
+		/**
+		 * Coach and student of each relation with a new student
+		 */
+		private int[] coachIds = new int[16], studentIds = new int[16];
+
+		/**
+		 * Number of relations with a new student
+		 */
+		private int relations;
+
+		/**
+		 * Coach of each reused student
+		 */
+		private int[] reusedCoaches = new int[4];
+
+		/**
+		 * Random fraction picking each reused student among the users 
+		 * generated before it
+		 */
+		private double[] reusedPicks = new double[4];
+
+		/**
+		 * Number of users of this block generated before each reused student
+		 */
+		private int[] reusedBefore = new int[4];
+
+		/**
+		 * Range of the relations with the new students of the coach of each 
+		 * reused student
+		 */
+		private int[] reusedFrom = new int[4], reusedTo = new int[4];
+
+		/**
+		 * Number of reused students
+		 */
+		private int reused;
+
+		/**
+		 * Generates the users of a block of top-level users level by level
+		 * @param random the generator of this block
+		 * @param topLevel the number of top-level users
+		 * @param maxStudents the maximum number of direct students per user
+		 * @param levels the number of levels of coach-student relationships
+		 */
+		private Block(SplittableRandom random, int topLevel, int maxStudents,
+				int levels) {
+			IntDeque work = new IntDeque(); // (user, levels left) pairs
+			for (int i = 0; i < topLevel; i++) {
+				work.addLast(users++);
+				work.addLast(levels);
+				while (!work.isEmpty()) {
+					int coach = work.pollFirst();
+					int left = work.pollFirst();
+					int numStudents = (int) Math.round(
+							random.nextDouble()*maxStudents);
+					int from = relations;
+					int firstReused = reused;
+					for (int j = 0; j < numStudents; j++) {
+						if (random.nextDouble() > probability) {
+							int student = users++;
+							addRelation(coach, student);
+							if (left > 1) {
+								work.addLast(student);
+								work.addLast(left - 1);
+							}
+						} else {
+							addReused(coach, random.nextDouble());
+						}
+					}
+					for (int j = firstReused; j < reused; j++) {
+						reusedFrom[j] = from;
+						reusedTo[j] = relations;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Adds a relation with a new student
+		 * @param coach the local index of the coach
+		 * @param student the local index of the student
+		 */
+		private void addRelation(int coach, int student) {
+			if (relations == coachIds.length) {
+				coachIds = Arrays.copyOf(coachIds, relations*2);
+				studentIds = Arrays.copyOf(studentIds, relations*2);
+			}
+			coachIds[relations] = coach;
+			studentIds[relations] = student;
+			relations++;
+		}
+
+		/**
+		 * Adds a reused student to be resolved once all blocks are placed
+		 * @param coach the local index of the coach
+		 * @param pick the random fraction picking the student
+		 */
+		private void addReused(int coach, double pick) {
+			if (reused == reusedCoaches.length) {
+				reusedCoaches = Arrays.copyOf(reusedCoaches, reused*2);
+				reusedPicks = Arrays.copyOf(reusedPicks, reused*2);
+				reusedBefore = Arrays.copyOf(reusedBefore, reused*2);
+				reusedFrom = Arrays.copyOf(reusedFrom, reused*2);
+				reusedTo = Arrays.copyOf(reusedTo, reused*2);
+			}
+			reusedCoaches[reused] = coach;
+			reusedPicks[reused] = pick;
+			reusedBefore[reused] = users;
+			reused++;
+		}
+
+	}
+
+	/**
+	 * Generates a reproducible random artificial user base straight into an 
+	 * edge list file (see {@link #generateGraph(int, int, int)} for the 
+	 * shape of the user base). Users are numbered in the order they are 
+	 * created; each coach-student relation is written as a line 
+	 * "coach&lt;tab&gt;student" and each top-level user without students as a
+	 * line "user". Only the chain of users being populated is kept in memory 
+	 * (O(levels*maxStudents) ints), so the size of the user base is bounded by
+	 * the disk rather than by the heap.
+	 * @param path the path of the output file (created or truncated)
+	 * @param min minimum number of users (requires: >= 1)
+	 * @param maxStudents maximum number of direct students per user
+	 * @param levels number of levels of coach-student relationships to generate
+	 * @param seed the seed of the random generator
+	 * @return the number of relations written
+	 * @throws IOException if the file cannot be written
+	 */
+	public static long generateToFile(Path path, int min, int maxStudents,
+			int levels, long seed) throws IOException {
+		if (min < 1)
+			throw new IllegalArgumentException(Error.MIN_USERS.toString());
+		else if (maxStudents < 0)
+			throw new IllegalArgumentException(Error.MAX_STUDENTS.toString());
+		else if (levels < 1)
+			throw new IllegalArgumentException(Error.LEVELS.toString());
+
+		SplittableRandom random = new SplittableRandom(seed);
+		// one frame per level of the chain being populated
+		int[] coaches = new int[levels];
+		int[] left = new int[levels];
+		int[] numStudents = new int[levels];
+		int[] populated = new int[levels];
+		int[][] students = new int[levels][maxStudents];
+		long size = 0;
+		long relations = 0;
+
+		try (EdgeListWriter out = new EdgeListWriter(path)) {
+			for (int i = 0; i < min; i++) {
+				int user = newUser(size++);
+				int depth = 0;
+				coaches[0] = user;
+				left[0] = levels;
+				numStudents[0] = (int) Math.round(
+						random.nextDouble()*maxStudents);
+				populated[0] = 0;
+				if (numStudents[0] == 0)
+					out.user(user);
+
+				while (depth >= 0) {
+					if (populated[depth] == numStudents[depth]) {
+						depth--;
+						continue;
+					}
+					int coach = coaches[depth];
+					int j = populated[depth]++;
+					int student;
+					boolean newStudent = true;
+					if (random.nextDouble() > probability) // use new student
+						student = newUser(size++);
+					else {                                 // use existing one
+						student = (int) (random.nextDouble()*size);
+						if (contains(students[depth], j, student) || 
+								coach == student)
+							student = newUser(size++);
+						else
+							newStudent = false;
+					}
+					out.relation(coach, student);
+					relations++;
+					students[depth][j] = student;
+
+					// only populate the new students
+					if (newStudent && left[depth] > 1) {
+						depth++;
+						coaches[depth] = student;
+						left[depth] = left[depth-1] - 1;
+						numStudents[depth] = (int) Math.round(
+								random.nextDouble()*maxStudents);
+						populated[depth] = 0;
+					}
+				}
+			}
+		}
+		return relations;
+	}
+
+	/**
+	 * Gets the index of a new user of a streamed user base
+	 * @param size the number of users created so far
+	 * @return the index of the new user
+	 */
+	private static int newUser(long size) {
+		if (size >= Integer.MAX_VALUE)
+			throw new IllegalArgumentException(Error.TOO_MANY_USERS.toString());
+		return (int) size;
 	}
 
 	/**
 	 * Populates the students of this user recursively
-	 * @param users the list of ALL users in the user base graph
-	 * @param user the current user to populate
+	 * @param users the builder of ALL users in the user base graph
+	 * @param user the index of the current user to populate
 	 * @param maxStudents the maximum number of direct students per user
 	 * @param levels the number of levels of coach-student relationships 
 	 * (i.e. the number of levels to descend recursively)
 	 */
-	private static void populateUser(List<User> users, User user, 
+	private static void populateUser(UserGraph.Builder users, int user, 
 			int maxStudents, int levels) {
 		if (levels == 0)
 			return;
 		
 		int numStudents = (int) Math.round(Math.random()*maxStudents);
+		int[] students = new int[numStudents]; // students of this user so far
 		// populate students for this top-level user
 		for (int j = 0; j < numStudents; j++) {
-			User student;
+			int student;
 			boolean newStudent = true;
 			if (Math.random() > probability) // use new student
-				student = new User();
+				student = users.addUser();
 			else {                           // use existing student
-				student = users.get((int) (Math.random()*users.size()));
-				if (user.students().contains(student) || user.equals(student))
-					student = new User();
+				student = (int) (Math.random()*users.size());
+				if (contains(students, j, student) || user == student)
+					student = users.addUser();
 				else
 					newStudent = false;
 			}
 			
 			// set up coach-student relation
-			user.addStudent(student);
-			student.addCoach(user);
+			users.addRelation(user, student);
+			students[j] = student;
 			
 			// only populate the new students
-			if (newStudent) {
-				users.add(student);
+			if (newStudent)
 				populateUser(users,student,maxStudents,levels-1);
-			}
 		}
 	}
+
+	/**
+	 * Checks whether the given user is among the first elements of an array
+	 * @param users the array of user indices
+	 * @param length the number of elements to check
+	 * @param user the index of the user to search for
+	 * @return true if the user is found, false otherwise
+	 */
+	private static boolean contains(int[] users, int length, int user) {
+		for (int i = 0; i < length; i++)
+			if (users[i] == user)
+				return true;
+		return false;
+	}
 	
 }
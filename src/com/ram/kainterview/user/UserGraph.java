@@ -0,0 +1,794 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Compact store of the entire user base.
+ * Users are identified by a dense index in [0, size()) and the coach-student
+ * relations are kept in compressed sparse row (CSR) arrays in both directions
+ * so that traversals scan contiguous memory instead of chasing list nodes.
+ * Relations can be added and removed after the graph is built, and the 
+ * component index (if it was built) is kept up to date incrementally.
+ * Infections through {@link User} and {@link BatchInfection} may run from 
+ * several threads at once: they share a read lock that relation changes take
+ * exclusively, and infections of the same component are serialized by a 
+ * lock striped by component, so infections of different components run in 
+ * parallel and the versions of a component are never written by two 
+ * infections at once.
+ */
+public class UserGraph {
+
+	/**
+	 * Version that each user sees (stored per component once the component 
+	 * index is built)
+	 */
+	private final VersionStore versions;
+
+	/**
+	 * Students of each user
+	 */
+	private final Adjacency students;
+
+	/**
+	 * Coaches of each user
+	 */
+	private final Adjacency coaches;
+
+	/**
+	 * External ids of the users (null if the users have none)
+	 */
+	private final IdDictionary externalIds;
+
+	/**
+	 * Idle traversal engines (engines reuse their work deque and visited 
+	 * marks between calls, and a slot is null while its engine is borrowed or
+	 * was never created)
+	 */
+	private final AtomicReferenceArray<Traversal> traversals;
+
+	/**
+	 * Connected components of the user base (built on first use)
+	 */
+	private volatile ComponentIndex components;
+
+	/**
+	 * Observers of the version changes
+	 */
+	private volatile VersionListener[] listeners = new VersionListener[0];
+
+	/**
+	 * Number of component locks (a power of 2)
+	 */
+	private static final int STRIPES = 64;
+
+	/**
+	 * Lock shared by infections and taken exclusively by relation changes
+	 */
+	private final ReadWriteLock topology = new ReentrantReadWriteLock();
+
+	/**
+	 * Locks of the components (a component uses the lock of its id modulo the
+	 * number of locks; explicit locks rather than monitors so that virtual 
+	 * threads waiting for them do not pin their carrier)
+	 */
+	private final Lock[] stripes;
+
+	/**
+	 * Builds the CSR arrays from a list of coach-student relations
+	 * @param versions the version of each user (length = number of users)
+	 * @param coachIds the coach of each relation
+	 * @param studentIds the student of each relation
+	 * @param relations the number of relations
+	 */
+	UserGraph(int[] versions, int[] coachIds, int[] studentIds,
+			int relations) {
+		this(versions, coachIds, studentIds, relations, null);
+	}
+
+	/**
+	 * Builds the CSR arrays from a list of coach-student relations between 
+	 * users with external ids
+	 * @param versions the version of each user (length = number of users)
+	 * @param coachIds the coach of each relation
+	 * @param studentIds the student of each relation
+	 * @param relations the number of relations
+	 * @param externalIds the external ids of the users (or null)
+	 */
+	UserGraph(int[] versions, int[] coachIds, int[] studentIds,
+			int relations, IdDictionary externalIds) {
+		this(versions, 
+				new Adjacency(versions.length, coachIds, studentIds, relations),
+				new Adjacency(versions.length, studentIds, coachIds, relations),
+				externalIds);
+	}
+
+	/**
+	 * Wraps adjacencies that are already built
+	 * @param versions the version of each user (length = number of users)
+	 * @param students the students of each user
+	 * @param coaches the coaches of each user
+	 */
+	UserGraph(int[] versions, Adjacency students, Adjacency coaches) {
+		this(versions, students, coaches, null);
+	}
+
+	/**
+	 * Wraps adjacencies that are already built for users with external ids
+	 * @param versions the version of each user (length = number of users)
+	 * @param students the students of each user
+	 * @param coaches the coaches of each user
+	 * @param externalIds the external ids of the users (or null)
+	 */
+	UserGraph(int[] versions, Adjacency students, Adjacency coaches,
+			IdDictionary externalIds) {
+		this.versions = new VersionStore(versions);
+		this.students = students;
+		this.coaches = coaches;
+		this.externalIds = externalIds;
+		traversals = new AtomicReferenceArray<>(
+				Runtime.getRuntime().availableProcessors());
+		stripes = new Lock[STRIPES];
+		for (int i = 0; i < STRIPES; i++)
+			stripes[i] = new ReentrantLock();
+	}
+
+	/**
+	 * Gets the number of users in the user base
+	 * @return the number of users
+	 */
+	public int size() {
+		return versions.size();
+	}
+
+	/**
+	 * Gets the number of coach-student relations in the user base
+	 * @return the number of relations
+	 */
+	public int relations() {
+		return students.relations();
+	}
+
+	/**
+	 * Gets the external ids of the users (such as the ids of an imported 
+	 * roster)
+	 * @return the external ids, or null if the users have none
+	 */
+	public IdDictionary externalIds() {
+		return externalIds;
+	}
+
+	/**
+	 * Gets a view of the specified user
+	 * @param user the index of the user
+	 * @return the user
+	 */
+	public User user(int user) {
+		checkUser(user);
+		return new User(this, user);
+	}
+
+	/**
+	 * Gets a read-only list of views of all users in the user base (views are
+	 * created on demand so the list does not hold any User objects)
+	 * @return the list of users
+	 */
+	public List<User> users() {
+		return new UserList(-1, null);
+	}
+
+	/**
+	 * Runs an action with a traversal engine borrowed from the user base for 
+	 * the duration of the action
+	 * @param action the action
+	 * @return the result of the action
+	 */
+	public <T> T traverse(Function<Traversal, T> action) {
+		Traversal traversal = acquireTraversal();
+		try {
+			return action.apply(traversal);
+		} finally {
+			releaseTraversal(traversal);
+		}
+	}
+
+	/**
+	 * Borrows an idle traversal engine (or creates one if all are borrowed)
+	 * @return the traversal engine
+	 */
+	private Traversal acquireTraversal() {
+		for (int i = 0; i < traversals.length(); i++) {
+			Traversal traversal = traversals.getAndSet(i, null);
+			if (traversal != null)
+				return traversal;
+		}
+		return new Traversal(this);
+	}
+
+	/**
+	 * Returns a borrowed traversal engine (dropped if enough engines are 
+	 * already idle, so the user base keeps at most one per processor)
+	 * @param traversal the traversal engine
+	 */
+	private void releaseTraversal(Traversal traversal) {
+		for (int i = 0; i < traversals.length(); i++)
+			if (traversals.compareAndSet(i, null, traversal))
+				return;
+	}
+
+	/**
+	 * Gets the index of the connected components of the user base (built once
+	 * on first use and then maintained as relations are added and removed)
+	 * @return the component index
+	 */
+	public ComponentIndex components() {
+		ComponentIndex index = components;
+		if (index == null) {
+			// relations cannot change while the index is built
+			Lock lock = topology.readLock();
+			lock.lock();
+			try {
+				synchronized (this) {
+					index = components;
+					if (index == null) {
+						index = new ComponentIndex(this);
+						index.attach(versions);
+						components = index;
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Adds a coach-student relation between two users
+	 * @param coach the index of the coach
+	 * @param student the index of the student
+	 * @return true if the relation was added, false if it already existed
+	 */
+	public boolean addRelation(int coach, int student) {
+		checkUser(coach);
+		checkUser(student);
+		Lock lock = topology.writeLock();
+		lock.lock();
+		try {
+			if (students.contains(coach, student))
+				return false;
+
+			for (VersionListener listener : listeners)
+				listener.relationChanging(this, coach, student, true);
+			students.add(coach, student);
+			coaches.add(student, coach);
+			if (components != null)
+				components.relationAdded(coach, student);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes a coach-student relation between two users
+	 * @param coach the index of the coach
+	 * @param student the index of the student
+	 * @return true if the relation was removed, false if it did not exist
+	 */
+	public boolean removeRelation(int coach, int student) {
+		checkUser(coach);
+		checkUser(student);
+		Lock lock = topology.writeLock();
+		lock.lock();
+		try {
+			if (!students.contains(coach, student))
+				return false;
+
+			for (VersionListener listener : listeners)
+				listener.relationChanging(this, coach, student, false);
+			students.remove(coach, student);
+			coaches.remove(student, coach);
+			if (components != null)
+				components.relationRemoved(coach, student);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Checks whether the given user is a student of the given coach
+	 * @param coach the index of the coach
+	 * @param student the index of the student
+	 * @return true if the relation exists, false otherwise
+	 */
+	public boolean hasRelation(int coach, int student) {
+		checkUser(coach);
+		checkUser(student);
+		return students.contains(coach, student);
+	}
+
+	/**
+	 * Checks that an index refers to a user of this user base
+	 * @param user the index of the user
+	 */
+	private void checkUser(int user) {
+		if (user < 0 || user >= versions.size())
+			throw new IndexOutOfBoundsException("User: " + user);
+	}
+
+	/**
+	 * Gets the version that the specified user sees
+	 * @param user the index of the user
+	 * @return the version number
+	 */
+	public int version(int user) {
+		return versions.get(user);
+	}
+
+	/**
+	 * Sets the version that the specified user sees
+	 * @param user the index of the user
+	 * @param version the new version number
+	 */
+	void setVersion(int user, int version) {
+		int old = versions.get(user);
+		versions.set(user, version);
+		VersionListener[] observers = listeners;
+		if (observers.length != 0 && old != version)
+			for (VersionListener listener : observers)
+				listener.versionChanged(user, old, version);
+	}
+
+	/**
+	 * Sets the version of every user connected to the specified user in O(1)
+	 * (the observers are told before the versions change, and the caller 
+	 * runs it as an infection of the user)
+	 * @param user the index of the user
+	 * @param version the new version number
+	 */
+	void setComponentVersion(int user, int version) {
+		setComponentVersion(user, version, false);
+	}
+
+	/**
+	 * Sets the version of every user connected to the specified user in O(1)
+	 * and optionally counts the users whose version changes (in O(1) too 
+	 * unless some users override the version of the component)
+	 * @param user the index of the user
+	 * @param version the new version number
+	 * @param count whether to count the users whose version changes
+	 * @return the number of users whose version changed, or -1 if they were
+	 * not counted
+	 */
+	int setComponentVersion(int user, int version, boolean count) {
+		ComponentIndex index = components();
+		int c = index.componentOf(user);
+		ComponentChange change = new ComponentChange(this, user, c, 
+				index.size(c), versions.componentVersion(c), 
+				versions.uniform(c), version);
+		for (VersionListener listener : listeners)
+			listener.componentVersionChanging(change);
+		int changed = count ? change.changed() : -1;
+		versions.setComponent(c, version);
+		return changed;
+	}
+
+	/**
+	 * Runs an infection from the specified user while the relations cannot 
+	 * change and no other infection runs on the component of the user
+	 * @param user the index of the user
+	 * @param infection the infection
+	 * @return the result of the infection
+	 */
+	<T> T infect(int user, Supplier<T> infection) {
+		renumberIfExhausted();
+		return shared(() -> infectComponent(user, infection));
+	}
+
+	/**
+	 * Performs strict limited infection: selects whole connected components 
+	 * with exactly the given total number of users and moves each of them to
+	 * the version of its representative + 1. The relations cannot change 
+	 * from the selection until the last component is infected, so exactly 
+	 * the given number of users is infected.
+	 * @param users the number of users to infect
+	 * @return the infected components, or null if no components add up to 
+	 * the number of users
+	 */
+	public int[] strictInfect(int users) {
+		return strictInfect(users, null);
+	}
+
+	/**
+	 * Performs strict limited infection like {@link #strictInfect(int)} and 
+	 * counts its work (every user of an infected component is visited)
+	 * @param users the number of users to infect
+	 * @param counter the counter of the work of the infection (or null)
+	 * @return the infected components, or null if no components add up to 
+	 * the number of users
+	 */
+	public int[] strictInfect(int users, TraversalCounter counter) {
+		renumberIfExhausted();
+		return shared(() -> {
+			ComponentIndex index = components();
+			int[] found = index.componentsOfTotalSize(users);
+			if (found == null)
+				return null;
+			for (int component : found) {
+				int user = index.representative(component);
+				TraversalCounter.add(counter, index.size(component), 0);
+				infectComponent(user, () -> 
+						setComponentVersion(user, version(user)+1, false));
+			}
+			return found;
+		});
+	}
+
+	/**
+	 * Renumbers the generations of the versions if they run out (the caller
+	 * must not hold the read lock)
+	 */
+	private void renumberIfExhausted() {
+		if (versions.exhausted()) {
+			Lock lock = topology.writeLock();
+			lock.lock();
+			try {
+				if (versions.exhausted())
+					versions.renumber();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Runs an infection from the specified user while no other infection runs
+	 * on the component of the user (the caller holds the read lock)
+	 * @param user the index of the user
+	 * @param infection the infection
+	 * @return the result of the infection
+	 */
+	private <T> T infectComponent(int user, Supplier<T> infection) {
+		Lock stripe = stripe(user);
+		stripe.lock();
+		try {
+			infectionStarted();
+			try {
+				return infection.get();
+			} finally {
+				infectionFinished();
+			}
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	/**
+	 * Tells the observers that an infection starts
+	 */
+	void infectionStarted() {
+		for (VersionListener listener : listeners)
+			listener.infectionStarted();
+	}
+
+	/**
+	 * Tells the observers that an infection has finished
+	 */
+	void infectionFinished() {
+		for (VersionListener listener : listeners)
+			listener.infectionFinished();
+	}
+
+	/**
+	 * Runs a computation while the relations cannot change
+	 * @param computation the computation
+	 * @return the result of the computation
+	 */
+	<T> T shared(Supplier<T> computation) {
+		Lock lock = topology.readLock();
+		lock.lock();
+		try {
+			return computation.get();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the lock of the component of the specified user (the caller holds
+	 * the read lock so the component cannot change)
+	 * @param user the index of the user
+	 * @return the lock
+	 */
+	Lock stripe(int user) {
+		return stripes[components().componentOf(user) & (STRIPES - 1)];
+	}
+
+	/**
+	 * Gets the lock shared by infections and taken exclusively by relation 
+	 * changes
+	 * @return the lock
+	 */
+	ReadWriteLock topology() {
+		return topology;
+	}
+
+	/**
+	 * Registers an observer of the version changes of the users
+	 * @param listener the observer
+	 */
+	public synchronized void addVersionListener(VersionListener listener) {
+		VersionListener[] grown = Arrays.copyOf(listeners, 
+				listeners.length + 1);
+		grown[listeners.length] = listener;
+		listeners = grown;
+	}
+
+	/**
+	 * Unregisters an observer of the version changes of the users
+	 * @param listener the observer
+	 */
+	public synchronized void removeVersionListener(VersionListener listener) {
+		for (int i = 0; i < listeners.length; i++) {
+			if (listeners[i] == listener) {
+				VersionListener[] shrunk = new VersionListener[
+						listeners.length - 1];
+				System.arraycopy(listeners, 0, shrunk, 0, i);
+				System.arraycopy(listeners, i + 1, shrunk, i, 
+						shrunk.length - i);
+				listeners = shrunk;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of students of the specified user
+	 * @param user the index of the user
+	 * @return the number of students
+	 */
+	public int numStudents(int user) {
+		return students.count(user);
+	}
+
+	/**
+	 * Gets the number of coaches of the specified user
+	 * @param user the index of the user
+	 * @return the number of coaches
+	 */
+	public int numCoaches(int user) {
+		return coaches.count(user);
+	}
+
+	/**
+	 * Gets the position of the first student of the specified user
+	 * @param user the index of the user
+	 * @return the position (for use with {@link #studentAt(int)})
+	 */
+	int studentStart(int user) {
+		return students.start(user);
+	}
+
+	/**
+	 * Gets the position after the last student of the specified user
+	 * @param user the index of the user
+	 * @return the position (for use with {@link #studentAt(int)})
+	 */
+	int studentEnd(int user) {
+		return students.end(user);
+	}
+
+	/**
+	 * Gets the student stored at the specified position
+	 * @param position the position in the students array
+	 * @return the index of the student
+	 */
+	int studentAt(int position) {
+		return students.at(position);
+	}
+
+	/**
+	 * Gets the position of the first coach of the specified user
+	 * @param user the index of the user
+	 * @return the position (for use with {@link #coachAt(int)})
+	 */
+	int coachStart(int user) {
+		return coaches.start(user);
+	}
+
+	/**
+	 * Gets the position after the last coach of the specified user
+	 * @param user the index of the user
+	 * @return the position (for use with {@link #coachAt(int)})
+	 */
+	int coachEnd(int user) {
+		return coaches.end(user);
+	}
+
+	/**
+	 * Gets the coach stored at the specified position
+	 * @param position the position in the coaches array
+	 * @return the index of the coach
+	 */
+	int coachAt(int position) {
+		return coaches.at(position);
+	}
+
+	/**
+	 * Gets a read-only list of views of the students of the specified user
+	 * @param user the index of the user
+	 * @return the list of students
+	 */
+	List<User> studentsOf(int user) {
+		return new UserList(user, students);
+	}
+
+	/**
+	 * Gets a read-only list of views of the coaches of the specified user
+	 * @param user the index of the user
+	 * @return the list of coaches
+	 */
+	List<User> coachesOf(int user) {
+		return new UserList(user, coaches);
+	}
+
+	/**
+	 * Read-only list of user views backed by the adjacency of a user (or by 
+	 * all user indices if no adjacency is given)
+	 */
+	private class UserList extends AbstractList<User> implements RandomAccess {
+
+		/**
+		 * Index of the user whose adjacency is listed
+		 */
+		private final int user;
+
+		/**
+		 * Backing adjacency (null for the list of all users)
+		 */
+		private final Adjacency adjacency;
+
+		private UserList(int user, Adjacency adjacency) {
+			this.user = user;
+			this.adjacency = adjacency;
+		}
+
+		@Override
+		public User get(int i) {
+			if (i < 0 || i >= size())
+				throw new IndexOutOfBoundsException("Index: " + i);
+			return new User(UserGraph.this, adjacency == null ? i : 
+				adjacency.at(adjacency.start(user) + i));
+		}
+
+		@Override
+		public int size() {
+			return adjacency == null ? versions.size() : adjacency.count(user);
+		}
+
+	}
+
+	/**
+	 * Incrementally collects users and coach-student relations and then
+	 * compacts them into a {@link UserGraph}
+	 */
+	public static class Builder {
+
+		/**
+		 * Initial capacity of the growable arrays
+		 */
+		private static final int INITIAL_CAPACITY = 16;
+
+		/**
+		 * Version of each user added so far
+		 */
+		private int[] versions = new int[INITIAL_CAPACITY];
+
+		/**
+		 * Number of users added so far
+		 */
+		private int size;
+
+		/**
+		 * Coach of each relation added so far
+		 */
+		private int[] coachIds = new int[INITIAL_CAPACITY];
+
+		/**
+		 * Student of each relation added so far
+		 */
+		private int[] studentIds = new int[INITIAL_CAPACITY];
+
+		/**
+		 * Number of relations added so far
+		 */
+		private int relations;
+
+		/**
+		 * Adds a user on the base version
+		 * @return the index of the new user
+		 */
+		public int addUser() {
+			return addUser(0);
+		}
+
+		/**
+		 * Adds a user on the given version
+		 * @param version the version that the user sees
+		 * @return the index of the new user
+		 */
+		public int addUser(int version) {
+			if (size == versions.length)
+				versions = Arrays.copyOf(versions, size*2);
+			versions[size] = version;
+			return size++;
+		}
+
+		/**
+		 * Adds a coach-student relation between two users already added
+		 * @param coach the index of the coach
+		 * @param student the index of the student
+		 */
+		public void addRelation(int coach, int student) {
+			if (coach < 0 || coach >= size)
+				throw new IndexOutOfBoundsException("Coach: " + coach);
+			if (student < 0 || student >= size)
+				throw new IndexOutOfBoundsException("Student: " + student);
+
+			if (relations == coachIds.length) {
+				coachIds = Arrays.copyOf(coachIds, relations*2);
+				studentIds = Arrays.copyOf(studentIds, relations*2);
+			}
+			coachIds[relations] = coach;
+			studentIds[relations] = student;
+			relations++;
+		}
+
+		/**
+		 * Gets the number of users added so far
+		 * @return the number of users
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Compacts the users and relations added so far into a graph
+		 * @return the graph
+		 */
+		public UserGraph build() {
+			return new UserGraph(Arrays.copyOf(versions, size), coachIds,
+					studentIds, relations);
+		}
+
+	}
+
+}
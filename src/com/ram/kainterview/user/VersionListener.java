@@ -0,0 +1,69 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+/**
+ * Observer of the version changes of the users in a user base
+ */
+public interface VersionListener {
+
+	/**
+	 * Called whenever the version of a user changes (may be called from 
+	 * several threads at once by the parallel infection engines)
+	 * @param user the index of the user
+	 * @param oldVersion the previous version number
+	 * @param newVersion the new version number
+	 */
+	public void versionChanged(int user, int oldVersion, int newVersion);
+
+	/**
+	 * Called before every user of a component moves to a version at once (by
+	 * default reports each user whose version changes to 
+	 * {@link #versionChanged}, which costs a traversal of the component 
+	 * shared by all the observers; observers that only need the component or
+	 * the number of changes handle it in constant time)
+	 * @param change the change of the component
+	 */
+	public default void componentVersionChanging(ComponentChange change) {
+		change.forEach(this);
+	}
+
+	/**
+	 * Called before a coach-student relation is added or removed (while no 
+	 * infection runs)
+	 * @param graph the user base
+	 * @param coach the index of the coach
+	 * @param student the index of the student
+	 * @param added true if the relation is added, false if it is removed
+	 */
+	public default void relationChanging(UserGraph graph, int coach, 
+			int student, boolean added) { }
+
+	/**
+	 * Called when an infection starts (before it changes any version, on the
+	 * thread that makes its changes)
+	 */
+	public default void infectionStarted() { }
+
+	/**
+	 * Called when an infection has finished changing versions (on the thread
+	 * that made its changes)
+	 */
+	public default void infectionFinished() { }
+
+}
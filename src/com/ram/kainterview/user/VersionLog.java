@@ -0,0 +1,506 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+
+import com.ram.kainterview.Error;
+
+/**
+ * Write-ahead log of the version changes of a user base.
+ * Every version change (and every relation change, so that the components 
+ * are the same when the log is replayed) is appended to an in-memory batch, 
+ * and a commit writes the batches to the log and forces them to the disk. 
+ * Commits are grouped: a thread that commits while another one is forcing 
+ * the log waits for it and then finds its changes already durable, so 
+ * concurrent commits share a single force. A log is a header (magic number, 
+ * format version, number of users, number of relations and a fingerprint of 
+ * the relations of the user base the log was created for) followed by 
+ * batches of a record count, the CRC32 of the records and the records 
+ * themselves (a kind and two ints: a user and its new version, a user whose 
+ * whole component moves to a new version, or the coach and student of a 
+ * relation added or removed). All values are little-endian. Opening a log 
+ * checks that it belongs to the user base, replays it and truncates a batch 
+ * torn by a crash. Once a batch fails to be written the log fails: every 
+ * later change and commit throws, since the batches after a torn one would 
+ * never be replayed. The log grows with every change until a checkpoint 
+ * writes the user base to a snapshot and empties it.
+ */
+public class VersionLog implements VersionListener, Closeable {
+
+	/**
+	 * Magic number at the start of every log ("INFL")
+	 */
+	private static final int MAGIC = 0x494E464C;
+
+	/**
+	 * Version of the log format
+	 */
+	private static final int FORMAT = 3;
+
+	/**
+	 * Size of the header in bytes
+	 */
+	private static final int HEADER = 4*4 + 8;
+
+	/**
+	 * Size of the header of a batch in bytes
+	 */
+	private static final int BATCH_HEADER = 2*4;
+
+	/**
+	 * Size of a record in bytes
+	 */
+	private static final int RECORD = 3*4;
+
+	/**
+	 * Kinds of records
+	 */
+	private static final int USER = 0, COMPONENT = 1, ADDED = 2, REMOVED = 3;
+
+	/**
+	 * Size of the batch buffers in bytes
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * User base
+	 */
+	private final UserGraph graph;
+
+	/**
+	 * Log file
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * Batch being filled (guarded by this log) and batch being written 
+	 * (guarded by the flush lock)
+	 */
+	private ByteBuffer filling, writing;
+
+	/**
+	 * Number of records appended (guarded by this log)
+	 */
+	private long appended;
+
+	/**
+	 * Lock held while writing and forcing the log
+	 */
+	private final Object flushLock = new Object();
+
+	/**
+	 * Number of records written to the log (guarded by the flush lock)
+	 */
+	private long written;
+
+	/**
+	 * Number of records forced to the disk
+	 */
+	private volatile long durable;
+
+	/**
+	 * Checksum of the batches (guarded by the flush lock)
+	 */
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * Error that failed the log (null while the log works)
+	 */
+	private volatile IOException failure;
+
+	/**
+	 * Constructs a log appending to an open file
+	 * @param graph the user base
+	 * @param channel the log file positioned after its last batch
+	 */
+	private VersionLog(UserGraph graph, FileChannel channel) {
+		this.graph = graph;
+		this.channel = channel;
+		filling = newBuffer();
+		writing = newBuffer();
+	}
+
+	/**
+	 * Opens a log (created if it does not exist), replays its changes into a 
+	 * user base and observes the user base to log its changes from now on
+	 * @param graph the user base
+	 * @param path the path of the log
+	 * @return the log
+	 * @throws IOException if the file cannot be read or written or is not a 
+	 * log of this user base
+	 */
+	public static VersionLog open(UserGraph graph, Path path) 
+			throws IOException {
+		FileChannel channel = FileChannel.open(path, 
+				StandardOpenOption.CREATE, StandardOpenOption.READ, 
+				StandardOpenOption.WRITE);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			if (channel.size() == 0) {
+				writeHeader(graph, channel);
+			} else {
+				if (!read(channel, header) || header.getInt(0) != MAGIC || 
+						header.getInt(4) != FORMAT || 
+						header.getInt(8) != graph.size() || 
+						header.getInt(12) != graph.relations() || 
+						header.getLong(16) != fingerprint(graph))
+					throw new IOException(Error.VERSION_LOG.toString());
+				long end = replay(graph, channel);
+				if (end < channel.size()) {
+					channel.truncate(end);
+					channel.force(true);
+				}
+			}
+			channel.position(channel.size());
+			VersionLog log = new VersionLog(graph, channel);
+			graph.addVersionListener(log);
+			return log;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the header of an empty log of a user base and forces it to the 
+	 * disk
+	 * @param graph the user base
+	 * @param channel the log file positioned at its start
+	 * @throws IOException if the file cannot be written
+	 */
+	private static void writeHeader(UserGraph graph, FileChannel channel) 
+			throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(FORMAT).putInt(graph.size())
+				.putInt(graph.relations()).putLong(fingerprint(graph));
+		header.flip();
+		write(channel, header);
+		channel.force(true);
+	}
+
+	/**
+	 * Computes a fingerprint of the relations of a user base that does not 
+	 * depend on their order (the sum of a hash of every relation)
+	 * @param graph the user base
+	 * @return the fingerprint
+	 */
+	private static long fingerprint(UserGraph graph) {
+		long sum = 0;
+		for (int u = 0; u < graph.size(); u++)
+			for (int i = graph.studentStart(u); i < graph.studentEnd(u); i++)
+				sum += Adjacency.hash(u, graph.studentAt(i));
+		return sum;
+	}
+
+	/**
+	 * Applies the valid batches of a log to a user base
+	 * @param graph the user base
+	 * @param channel the log positioned after its header
+	 * @return the position after the last valid batch
+	 * @throws IOException if the file cannot be read or a batch has an 
+	 * invalid record
+	 */
+	private static long replay(UserGraph graph, FileChannel channel) 
+			throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		ByteBuffer records = newBuffer();
+		CRC32 crc = new CRC32();
+		long end = channel.position();
+		while (true) {
+			header.clear();
+			if (!read(channel, header))
+				return end;
+			int count = header.getInt(0);
+			if (count <= 0 || count > BUFFER_SIZE/RECORD)
+				return end;
+			records.clear().limit(count*RECORD);
+			if (!read(channel, records))
+				return end;
+			crc.reset();
+			crc.update(records);
+			if ((int) crc.getValue() != header.getInt(4))
+				return end;
+			for (int i = 0; i < count; i++)
+				apply(graph, records.getInt(i*RECORD), 
+						records.getInt(i*RECORD + 4), 
+						records.getInt(i*RECORD + 8));
+			end = channel.position();
+		}
+	}
+
+	/**
+	 * Applies a record to a user base
+	 * @param graph the user base
+	 * @param kind the kind of the record
+	 * @param user the user (or coach) of the record
+	 * @param value the version (or student) of the record
+	 * @throws IOException if the record is invalid
+	 */
+	private static void apply(UserGraph graph, int kind, int user, int value)
+			throws IOException {
+		boolean relation = kind == ADDED || kind == REMOVED;
+		if (kind < USER || kind > REMOVED || user < 0 || 
+				user >= graph.size() || 
+				relation && (value < 0 || value >= graph.size()))
+			throw new IOException(Error.VERSION_LOG.toString());
+		if (kind == USER)
+			graph.setVersion(user, value);
+		else if (kind == COMPONENT)
+			graph.setComponentVersion(user, value);
+		else if (kind == ADDED)
+			graph.addRelation(user, value);
+		else
+			graph.removeRelation(user, value);
+	}
+
+	@Override
+	public void versionChanged(int user, int oldVersion, int newVersion) {
+		append(USER, user, newVersion);
+	}
+
+	@Override
+	public void componentVersionChanging(ComponentChange change) {
+		if (change.changed() != 0)
+			append(COMPONENT, change.user(), change.version());
+	}
+
+	@Override
+	public void relationChanging(UserGraph graph, int coach, int student, 
+			boolean added) {
+		append(added ? ADDED : REMOVED, coach, student);
+	}
+
+	/**
+	 * Appends a record to the batch being filled
+	 * @param kind the kind of the record
+	 * @param user the user (or coach) of the record
+	 * @param value the version (or student) of the record
+	 */
+	private void append(int kind, int user, int value) {
+		while (true) {
+			if (failure != null)
+				throw new UncheckedIOException(failed());
+			synchronized (this) {
+				if (filling.remaining() >= RECORD) {
+					filling.putInt(kind).putInt(user).putInt(value);
+					appended++;
+					return;
+				}
+			}
+			// the batch is full: write it out without forcing it
+			synchronized (flushLock) {
+				try {
+					writeBatch();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes every change logged so far durable (a commit that overlaps with 
+	 * another one waits for it and may find nothing left to force)
+	 * @throws IOException if the log cannot be written or has failed
+	 */
+	public void commit() throws IOException {
+		if (failure != null)
+			throw failed();
+		long target;
+		synchronized (this) {
+			target = appended;
+		}
+		if (durable >= target)
+			return;
+		synchronized (flushLock) {
+			if (durable >= target)
+				return;
+			// the leader also writes the changes of the threads queued behind
+			writeBatch();
+			try {
+				channel.force(false);
+			} catch (IOException e) {
+				failure = e;
+				throw e;
+			}
+			durable = written;
+		}
+	}
+
+	/**
+	 * Gets the number of records logged since the log was opened
+	 * @return the number of records
+	 */
+	public synchronized long size() {
+		return appended;
+	}
+
+	/**
+	 * Writes the user base to a snapshot and empties the log, so that the log
+	 * only holds the changes made after the snapshot (from now on the log 
+	 * must be replayed into the user base read from the snapshot). 
+	 * Infections and relation changes wait for the checkpoint. The snapshot 
+	 * atomically replaces the file before the log is emptied: if the process 
+	 * stops in between, the log still holds the changes already in the 
+	 * snapshot, which replays them to the same versions if the relations did
+	 * not change and rejects the log otherwise (it can then be deleted).
+	 * @param snapshot the path of the snapshot
+	 * @throws IOException if the snapshot or the log cannot be written
+	 */
+	public void checkpoint(Path snapshot) throws IOException {
+		Lock lock = graph.topology().writeLock();
+		lock.lock();
+		try {
+			commit();
+			Path temp = snapshot.resolveSibling(snapshot.getFileName() + 
+					".tmp");
+			Snapshot.write(graph, temp);
+			try (FileChannel file = FileChannel.open(temp, 
+					StandardOpenOption.WRITE)) {
+				file.force(true);
+			}
+			Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, 
+					StandardCopyOption.ATOMIC_MOVE);
+			synchronized (flushLock) {
+				try {
+					channel.truncate(0);
+					channel.position(0);
+					writeHeader(graph, channel);
+				} catch (IOException e) {
+					failure = e;
+					throw e;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Commits the log and stops observing the user base
+	 * @throws IOException if the log cannot be written
+	 */
+	@Override
+	public void close() throws IOException {
+		graph.removeVersionListener(this);
+		try {
+			commit();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Gets the error thrown by a log that has failed
+	 * @return the error
+	 */
+	private IOException failed() {
+		return new IOException(Error.LOG_FAILED.toString(), failure);
+	}
+
+	/**
+	 * Writes the batch being filled to the log (the caller holds the flush 
+	 * lock), dropping the batch and failing the log if it cannot be written
+	 * @throws IOException if the log cannot be written or has failed
+	 */
+	private void writeBatch() throws IOException {
+		if (failure != null)
+			throw failed();
+		long count;
+		synchronized (this) {
+			ByteBuffer batch = filling;
+			filling = writing;
+			writing = batch;
+			count = appended;
+		}
+		writing.flip();
+		if (writing.hasRemaining()) {
+			crc.reset();
+			crc.update(writing);
+			writing.rewind();
+			ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(writing.remaining()/RECORD)
+					.putInt((int) crc.getValue());
+			header.flip();
+			try {
+				write(channel, header);
+				write(channel, writing);
+			} catch (IOException e) {
+				writing.clear();
+				failure = e;
+				throw e;
+			}
+		}
+		writing.clear();
+		written = count;
+	}
+
+	/**
+	 * Allocates a batch buffer
+	 * @return the buffer
+	 */
+	private static ByteBuffer newBuffer() {
+		return ByteBuffer.allocateDirect(BUFFER_SIZE)
+				.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Writes a whole buffer to a file
+	 * @param channel the file
+	 * @param buffer the buffer
+	 * @throws IOException if the file cannot be written
+	 */
+	private static void write(FileChannel channel, ByteBuffer buffer) 
+			throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	/**
+	 * Fills a buffer from a file
+	 * @param channel the file
+	 * @param buffer the buffer
+	 * @return true if the buffer was filled, false if the file ended first
+	 * @throws IOException if the file cannot be read
+	 */
+	private static boolean read(FileChannel channel, ByteBuffer buffer) 
+			throws IOException {
+		while (buffer.hasRemaining())
+			if (channel.read(buffer) < 0)
+				return false;
+		buffer.flip();
+		return true;
+	}
+
+}
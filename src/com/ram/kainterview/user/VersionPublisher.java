@@ -0,0 +1,215 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Publisher of read-only snapshots of the versions of a user base.
+ * The publisher observes the version changes and keeps the changes of each 
+ * infection in progress aside (per thread, since an infection changes 
+ * versions on the thread that runs it). When an infection finishes, its 
+ * changes are applied to the publisher's own chunks of versions, copying a 
+ * chunk the first time one of its users changes after a publication (copy 
+ * on write), and a new {@link VersionSnapshot} is published through a 
+ * volatile reference. Every finished infection is therefore visible at once,
+ * even while other infections keep running, and readers look versions up 
+ * without locks and never see a partial infection. Changes made outside 
+ * infections are published with the next infection or by 
+ * {@link #publish()}.
+ */
+public class VersionPublisher implements VersionListener {
+
+	/**
+	 * Number of bits of the position of a user in its chunk
+	 */
+	static final int CHUNK_BITS = 12;
+
+	/**
+	 * Number of users per chunk
+	 */
+	static final int CHUNK = 1 << CHUNK_BITS;
+
+	/**
+	 * Number of users
+	 */
+	private final int size;
+
+	/**
+	 * Versions of the next snapshot by chunk (chunks that were not copied 
+	 * since the last publication are shared with the published snapshot)
+	 */
+	private final int[][] chunks;
+
+	/**
+	 * Chunks copied since the last publication
+	 */
+	private final boolean[] copied;
+
+	/**
+	 * Indices of the chunks copied since the last publication
+	 */
+	private final int[] dirty;
+
+	/**
+	 * Number of chunks copied since the last publication
+	 */
+	private int dirtyCount;
+
+	/**
+	 * Whether a version changed since the last publication
+	 */
+	private boolean changed;
+
+	/**
+	 * Changes of the infection in progress on each thread
+	 */
+	private final ThreadLocal<Pending> pending = 
+			ThreadLocal.withInitial(Pending::new);
+
+	/**
+	 * Number of buffered ints beyond which the buffer of a thread is not 
+	 * kept after its infection is published
+	 */
+	private static final int BUFFER_LIMIT = 1 << 16;
+
+	/**
+	 * Last snapshot published
+	 */
+	private volatile VersionSnapshot current;
+
+	/**
+	 * Constructs a publisher of the versions of a user base and publishes a 
+	 * first snapshot
+	 * @param graph the user base
+	 */
+	public VersionPublisher(UserGraph graph) {
+		size = graph.size();
+		int count = (size + CHUNK - 1) >>> CHUNK_BITS;
+		chunks = new int[count][];
+		copied = new boolean[count];
+		dirty = new int[count];
+
+		// no version changes while the first snapshot is taken
+		Lock lock = graph.topology().writeLock();
+		lock.lock();
+		try {
+			for (int c = 0; c < count; c++) {
+				int first = c << CHUNK_BITS;
+				int[] chunk = new int[Math.min(CHUNK, size - first)];
+				for (int i = 0; i < chunk.length; i++)
+					chunk[i] = graph.version(first + i);
+				chunks[c] = chunk;
+			}
+			current = new VersionSnapshot(chunks.clone(), size, 0);
+			graph.addVersionListener(this);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the last snapshot published (wait-free)
+	 * @return the snapshot
+	 */
+	public VersionSnapshot current() {
+		return current;
+	}
+
+	@Override
+	public void versionChanged(int user, int oldVersion, int newVersion) {
+		Pending infection = pending.get();
+		if (infection.depth > 0) {
+			infection.changes.addLast(user);
+			infection.changes.addLast(newVersion);
+			return;
+		}
+		synchronized (this) {
+			apply(user, newVersion);
+		}
+	}
+
+	/**
+	 * Applies a change to the versions of the next snapshot
+	 * @param user the index of the user
+	 * @param newVersion the new version number
+	 */
+	private void apply(int user, int newVersion) {
+		int c = user >>> CHUNK_BITS;
+		if (!copied[c]) {
+			chunks[c] = chunks[c].clone();
+			copied[c] = true;
+			dirty[dirtyCount++] = c;
+		}
+		chunks[c][user & (CHUNK - 1)] = newVersion;
+		changed = true;
+	}
+
+	@Override
+	public void infectionStarted() {
+		pending.get().depth++;
+	}
+
+	@Override
+	public void infectionFinished() {
+		Pending infection = pending.get();
+		if (--infection.depth > 0)
+			return;
+		IntDeque changes = infection.changes;
+		synchronized (this) {
+			int size = changes.size();
+			while (!changes.isEmpty())
+				apply(changes.pollFirst(), changes.pollFirst());
+			if (changed)
+				publish();
+			if (size > BUFFER_LIMIT)
+				infection.changes = new IntDeque();
+		}
+	}
+
+	/**
+	 * Publishes the versions as they are now (they may include a partial 
+	 * infection if one is in progress)
+	 */
+	public synchronized void publish() {
+		current = new VersionSnapshot(chunks.clone(), size, 
+				current.sequence() + 1);
+		for (int i = 0; i < dirtyCount; i++)
+			copied[dirty[i]] = false;
+		dirtyCount = 0;
+		changed = false;
+	}
+
+	/**
+	 * Changes of the infection in progress on a thread
+	 */
+	private static class Pending {
+
+		/**
+		 * Number of nested infections in progress
+		 */
+		private int depth;
+
+		/**
+		 * Users and new versions changed by the infection
+		 */
+		private IntDeque changes = new IntDeque();
+
+	}
+
+}
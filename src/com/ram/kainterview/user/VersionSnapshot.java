@@ -0,0 +1,84 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+/**
+ * Immutable copy of the versions of all users at a point where no infection 
+ * was in progress.
+ * Versions are kept in chunks of consecutive users that snapshots share 
+ * until a user of the chunk changes, so a lookup is two array reads without
+ * any lock.
+ */
+public final class VersionSnapshot {
+
+	/**
+	 * Versions of the users by chunk
+	 */
+	private final int[][] chunks;
+
+	/**
+	 * Number of users
+	 */
+	private final int size;
+
+	/**
+	 * Number of snapshots published before this one
+	 */
+	private final long sequence;
+
+	/**
+	 * Constructs a snapshot (the chunks must never change afterwards)
+	 * @param chunks the versions of the users by chunk
+	 * @param size the number of users
+	 * @param sequence the number of snapshots published before this one
+	 */
+	VersionSnapshot(int[][] chunks, int size, long sequence) {
+		this.chunks = chunks;
+		this.size = size;
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Gets the version that the specified user sees
+	 * @param user the index of the user
+	 * @return the version number
+	 */
+	public int version(int user) {
+		if (user < 0 || user >= size)
+			throw new IndexOutOfBoundsException("User: " + user);
+		return chunks[user >>> VersionPublisher.CHUNK_BITS]
+				[user & (VersionPublisher.CHUNK - 1)];
+	}
+
+	/**
+	 * Gets the number of users
+	 * @return the number of users
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of snapshots published before this one
+	 * @return the sequence number
+	 */
+	public long sequence() {
+		return sequence;
+	}
+
+}
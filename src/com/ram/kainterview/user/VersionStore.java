@@ -0,0 +1,271 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Storage of the versions of the users at the level of their connected 
+ * components.
+ * Each component has a version and a generation, and each user may override
+ * the version of its component: the version of a user is its own version if
+ * its stamp equals the generation of its component, and the version of its 
+ * component otherwise. Moving a whole component to a version (total 
+ * infection) is therefore a single write of the version and a new generation,
+ * which invalidates every override of the component at once. Generations are 
+ * unique across components (0 is never used), so a stale stamp can never 
+ * match another component. The store also counts the valid overrides of 
+ * each component, so that a component whose users all share its version is 
+ * recognized in constant time. Until the store is attached to a 
+ * {@link ComponentIndex}, every user simply has its own version.
+ * Writes to a component must not overlap with other writes to the same 
+ * component or with relation changes (see {@link UserGraph#infect}); writes
+ * to different components may run concurrently.
+ */
+class VersionStore {
+
+	/**
+	 * Own version of each user (only meaningful while its stamp is valid once
+	 * the store is attached)
+	 */
+	private final int[] versions;
+
+	/**
+	 * Generation of the component when the own version of each user was 
+	 * written (null until the store is attached)
+	 */
+	private volatile int[] stamps;
+
+	/**
+	 * Components of the users
+	 */
+	private ComponentIndex index;
+
+	/**
+	 * Version of each component (component ids never reach the number of 
+	 * users, so the array never grows)
+	 */
+	private int[] componentVersions;
+
+	/**
+	 * Generation of each component
+	 */
+	private int[] generations;
+
+	/**
+	 * Number of users of each component that override its version (updated 
+	 * atomically since infections of different components run on several 
+	 * threads at once)
+	 */
+	private AtomicIntegerArray overrides;
+
+	/**
+	 * Last generation handed out
+	 */
+	private final AtomicInteger generation = new AtomicInteger();
+
+	/**
+	 * Generation beyond which the generations must be renumbered (leaves room
+	 * for the writes that already checked the limit)
+	 */
+	private static final int GENERATION_LIMIT = Integer.MAX_VALUE - (1 << 24);
+
+	/**
+	 * Constructs a store where every user has its own version
+	 * @param versions the version of each user
+	 */
+	VersionStore(int[] versions) {
+		this.versions = versions;
+	}
+
+	/**
+	 * Gets the number of users
+	 * @return the number of users
+	 */
+	int size() {
+		return versions.length;
+	}
+
+	/**
+	 * Gets the version of a user
+	 * @param user the index of the user
+	 * @return the version number
+	 */
+	int get(int user) {
+		int[] s = stamps;
+		if (s == null)
+			return versions[user];
+		int c = index.componentOf(user);
+		return s[user] == generations[c] ? versions[user] : 
+			componentVersions[c];
+	}
+
+	/**
+	 * Sets the version of a single user
+	 * @param user the index of the user
+	 * @param version the new version number
+	 */
+	void set(int user, int version) {
+		int[] s = stamps;
+		if (s == null) {
+			versions[user] = version;
+			return;
+		}
+		int c = index.componentOf(user);
+		boolean valid = s[user] == generations[c];
+		if (version == componentVersions[c]) {
+			if (valid)
+				overrides.decrementAndGet(c);
+			s[user] = 0;
+		} else {
+			if (!valid)
+				overrides.incrementAndGet(c);
+			versions[user] = version;
+			s[user] = generations[c];
+		}
+	}
+
+	/**
+	 * Sets the version of every user of a component
+	 * @param component the component
+	 * @param version the new version number
+	 */
+	void setComponent(int component, int version) {
+		int g = generation.incrementAndGet();
+		componentVersions[component] = version;
+		generations[component] = g;
+		overrides.set(component, 0);
+	}
+
+	/**
+	 * Gets the version of a component (the version of its users that do not
+	 * override it)
+	 * @param component the component
+	 * @return the version number
+	 */
+	int componentVersion(int component) {
+		return componentVersions[component];
+	}
+
+	/**
+	 * Checks whether every user of a component has the version of the 
+	 * component
+	 * @param component the component
+	 * @return true if no user overrides the version of the component, false
+	 * otherwise
+	 */
+	boolean uniform(int component) {
+		return overrides.get(component) == 0;
+	}
+
+	/**
+	 * Switches to per-component storage (the version of each component is 
+	 * the version of its first user and the other users override it)
+	 * @param index the components of the users
+	 */
+	void attach(ComponentIndex index) {
+		this.index = index;
+		int bound = index.bound();
+		componentVersions = new int[Math.max(bound, versions.length)];
+		generations = new int[componentVersions.length];
+		overrides = new AtomicIntegerArray(componentVersions.length);
+		boolean[] seen = new boolean[bound];
+		int[] s = new int[versions.length];
+		for (int u = 0; u < versions.length; u++) {
+			int c = index.componentOf(u);
+			if (!seen[c]) {
+				seen[c] = true;
+				componentVersions[c] = versions[u];
+				generations[c] = generation.incrementAndGet();
+			}
+			if (versions[u] != componentVersions[c]) {
+				s[u] = generations[c];
+				overrides.incrementAndGet(c);
+			}
+		}
+		stamps = s;
+	}
+
+	/**
+	 * Initializes a component split off another one (before its users are 
+	 * moved)
+	 * @param component the new component
+	 * @param from the component it is split off
+	 */
+	void created(int component, int from) {
+		if (exhausted())
+			renumber();
+		int g = generation.incrementAndGet();
+		componentVersions[component] = componentVersions[from];
+		generations[component] = g;
+		overrides.set(component, 0);
+	}
+
+	/**
+	 * Moves a user to another component while keeping its version (called 
+	 * before the component of the user changes)
+	 * @param user the index of the user
+	 * @param from the old component
+	 * @param to the new component
+	 */
+	void moved(int user, int from, int to) {
+		int[] s = stamps;
+		int version = componentVersions[from];
+		if (s[user] == generations[from]) {
+			version = versions[user];
+			overrides.decrementAndGet(from);
+		}
+		if (version == componentVersions[to]) {
+			s[user] = 0;
+		} else {
+			overrides.incrementAndGet(to);
+			versions[user] = version;
+			s[user] = generations[to];
+		}
+	}
+
+	/**
+	 * Checks whether the generations run out and must be renumbered
+	 * @return true if the generations must be renumbered, false otherwise
+	 */
+	boolean exhausted() {
+		return generation.get() >= GENERATION_LIMIT;
+	}
+
+	/**
+	 * Renumbers all generations from 1 (no other write may run meanwhile)
+	 */
+	void renumber() {
+		int[] s = stamps;
+		for (int u = 0; u < versions.length; u++) {
+			versions[u] = get(u);
+			s[u] = 0;
+		}
+		int g = 0;
+		for (int c = 0; c < index.bound(); c++)
+			generations[c] = ++g;
+		generation.set(g);
+		for (int u = 0; u < versions.length; u++) {
+			int c = index.componentOf(u);
+			if (versions[u] != componentVersions[c])
+				s[u] = generations[c];
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+/**
+ * Package for the infection implementations for the Khan Academy interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.ram.kainterview.user.InfectionResult;
+import com.ram.kainterview.user.User;
+import com.ram.kainterview.user.UserGenerator;
+import com.ram.kainterview.user.UserGraph;
+
+/**
+ * Test cases for exact limited infection
+ */
+public class ExactLimitedInfectionTest {
+
+	/**
+	 * Builds a coach with a student that has two students of its own
+	 * 
+	 *         0
+	 *         1
+	 *       2   3
+	 * 
+	 * @return the user base
+	 */
+	private static UserGraph buildTree() {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		for (int i = 0; i < 4; i++)
+			builder.addUser();
+		builder.addRelation(0, 1);
+		builder.addRelation(1, 2);
+		builder.addRelation(1, 3);
+		return builder.build();
+	}
+
+	/**
+	 * Checks that students are infected before coaches and that the split 
+	 * pairs are reported
+	 */
+	@Test
+	public void testStudentsFirst() {
+		UserGraph graph = buildTree();
+		InfectionResult result = graph.user(1).exactInfect(1, 3);
+		assertEquals(result.infected(),3);
+		assertEquals(result.splitPairs(),1);
+		assertEquals(graph.version(0),0);
+		assertEquals(graph.version(2),1);
+		assertEquals(graph.version(3),1);
+
+		result = graph.user(3).exactInfect(1, 5);
+		assertEquals(result.infected(),1);
+		assertEquals(result.splitPairs(),0);
+		assertEquals(graph.version(0),1);
+	}
+
+	/**
+	 * Checks that exactly the requested number of users is infected in a 
+	 * cyclic graph and that scoring does not change any version
+	 */
+	@Test
+	public void testExactCount() {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		for (int i = 0; i < 10; i++)
+			builder.addUser();
+		for (int i = 0; i < 10; i++) {
+			builder.addRelation(i, (i+1) % 10);
+			builder.addRelation(i, (i+3) % 10);
+		}
+		UserGraph graph = builder.build();
+
+		InfectionResult score = graph.traverse(
+				traversal -> traversal.scoreInfect(0, 1, 4));
+		for (User user : graph.users())
+			assertEquals(user.version(),0);
+
+		InfectionResult result = graph.user(0).exactInfect(1, 4);
+		assertEquals(result.infected(),4);
+		assertEquals(result.splitPairs(),score.splitPairs());
+		assertEquals(result.splitPairs(),countSplitPairs(graph, 1));
+		int infected = 0;
+		for (User user : graph.users())
+			infected += user.version();
+		assertEquals(infected,4);
+	}
+
+	/**
+	 * Checks the exact count and the split pairs on random user bases against
+	 * a full recount
+	 */
+	@Test
+	public void testRandomUserBases() {
+		for (long seed = 0; seed < 20; seed++) {
+			UserGraph graph = UserGenerator.generateGraph(20, 6, 3, seed);
+			int size = graph.user(0).graphSize();
+			int users = (int) (seed * size / 20) + 1;
+			InfectionResult result = graph.user(0).exactInfect(1, users);
+			assertEquals(result.infected(),Math.min(users, size));
+			assertEquals(result.splitPairs(),countSplitPairs(graph, 1));
+		}
+	}
+
+	/**
+	 * Counts the relations between a user on the given version and a user on
+	 * another version
+	 * @param graph the user base
+	 * @param version the version
+	 * @return the number of relations
+	 */
+	private static int countSplitPairs(UserGraph graph, int version) {
+		int split = 0;
+		for (User coach : graph.users())
+			for (User student : coach.students())
+				if ((coach.version() == version) != 
+						(student.version() == version))
+					split++;
+		return split;
+	}
+
+}
@@ -0,0 +1,116 @@
+/**
+ * Package for the infection implementations for the Khan Academy interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import com.ram.kainterview.user.UserGraph;
+
+/**
+ * Test cases for running scripts of infections without the view
+ */
+public class HeadlessRunnerTest {
+
+	/**
+	 * Builds two chains of three and two users and an isolated user
+	 * @return the user base
+	 */
+	private static UserGraph buildGraph() {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		for (int i = 0; i < 6; i++)
+			builder.addUser();
+		builder.addRelation(0, 1);
+		builder.addRelation(1, 2);
+		builder.addRelation(3, 4);
+		return builder.build();
+	}
+
+	/**
+	 * Runs a script on a user base
+	 * @param graph the user base
+	 * @param script the script
+	 * @return the number of version changes
+	 * @throws IOException never (the script is in memory)
+	 */
+	private static long run(UserGraph graph, String script) 
+			throws IOException {
+		PrintStream out = new PrintStream(new ByteArrayOutputStream());
+		return new HeadlessRunner(graph, out).run(
+				new BufferedReader(new StringReader(script)));
+	}
+
+	/**
+	 * Checks total, limited and strict commands and comments
+	 * @throws IOException never
+	 */
+	@Test
+	public void testScript() throws IOException {
+		UserGraph graph = buildGraph();
+		assertEquals(run(graph, "# rollout\n\ntotal 1\n"), 3);
+		assertEquals(graph.version(0), 1);
+		assertEquals(graph.version(3), 0);
+
+		assertEquals(run(graph, "total 4 5\nstrict 1\n"), 3);
+		assertEquals(graph.version(3), 5);
+		assertEquals(graph.version(5), 1);
+
+		assertEquals(run(graph, "strict 7\n"), 0);
+		assertEquals(run(graph, "limited 2 1 7\n"), 1);
+		assertEquals(graph.version(2), 7);
+	}
+
+	/**
+	 * Checks that infection commands are undone in reverse order
+	 * @throws IOException never
+	 */
+	@Test
+	public void testUndo() throws IOException {
+		UserGraph graph = buildGraph();
+		assertEquals(run(graph, "total 0 2\nlimited 4 1 3\nundo\n"), 5);
+		assertEquals(graph.version(0), 2);
+		assertEquals(graph.version(4), 0);
+		assertEquals(run(graph, "limited 1 1 4\nundo 5\n"), 2);
+		assertEquals(graph.version(1), 2);
+	}
+
+	/**
+	 * Checks that an unknown command is rejected
+	 * @throws IOException never
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testUnknownCommand() throws IOException {
+		run(buildGraph(), "total 0\nrollback\n");
+	}
+
+	/**
+	 * Checks that an unknown user is rejected
+	 * @throws IOException never
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testUnknownUser() throws IOException {
+		run(buildGraph(), "total 6\n");
+	}
+
+}
@@ -0,0 +1,122 @@
+/**
+ * Package for the infection implementations for the Khan Academy interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.ram.kainterview.user.BatchInfection;
+import com.ram.kainterview.user.ChangeLog;
+import com.ram.kainterview.user.SeedScorer;
+import com.ram.kainterview.user.TraversalCounter;
+import com.ram.kainterview.user.UserGenerator;
+import com.ram.kainterview.user.UserGraph;
+
+/**
+ * Test cases for the metrics of the infections
+ */
+public class InfectionMetricsTest {
+
+	/**
+	 * Records infections and reads the counters through an MBean server
+	 * @throws Exception if the MBeans cannot be registered or read
+	 */
+	@Test
+	public void testCounters() throws Exception {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		for (int i = 0; i < 4; i++)
+			builder.addUser();
+		builder.addRelation(0, 1);
+		builder.addRelation(1, 2);
+		UserGraph graph = builder.build();
+		ChangeLog changes = new ChangeLog(graph.size());
+		graph.addVersionListener(changes);
+
+		InfectionMetrics metrics = new InfectionMetrics();
+		metrics.record(InfectionType.TOTAL, changes::size, counter -> {
+			graph.user(0).totalInfect(1, counter);
+			return null;
+		});
+		assertEquals(metrics.getUsersVisited(), 3);
+		assertEquals(metrics.getEdgesTraversed(), 0);
+		metrics.record(InfectionType.LIMITED, changes::size, 
+				counter -> graph.user(2).exactInfect(2, 1, counter));
+		assertEquals(metrics.getInfections(), 2);
+		assertEquals(metrics.getUsersChanged(), 3);
+		assertEquals(metrics.getUsersVisited(), 4);
+		assertEquals(metrics.getEdgesTraversed(), 1);
+		assertEquals(metrics.latency(InfectionType.TOTAL).getCount(), 1);
+		assertEquals(metrics.latency(InfectionType.STRICT).getCount(), 0);
+
+		MBeanServer server = MBeanServerFactory.newMBeanServer();
+		metrics.register(server);
+		assertEquals(server.getAttribute(new ObjectName(
+				"com.ram.kainterview:type=InfectionMetrics"), "UsersChanged"), 
+				3L);
+		assertEquals(server.getAttribute(new ObjectName(
+				"com.ram.kainterview:type=Latency,name=LIMITED"), "Count"), 
+				1L);
+	}
+
+	/**
+	 * Counts the work done on the threads of a pool
+	 */
+	@Test
+	public void testPoolCounters() {
+		UserGraph graph = UserGenerator.generateGraph(200, 3, 3, 7);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		int[] candidates = new int[graph.size()];
+		for (int u = 0; u < candidates.length; u++)
+			candidates[u] = u;
+		TraversalCounter counter = new TraversalCounter();
+		SeedScorer.bestSeeds(graph, 1, 1, candidates, pool, counter);
+		assertEquals(counter.visited(), graph.size());
+		assertEquals(counter.edgesTraversed(), 2L*graph.relations());
+
+		counter = new TraversalCounter();
+		BatchInfection.totalInfect(graph, candidates, 1, pool, counter);
+		assertEquals(counter.visited(), graph.size());
+		assertEquals(counter.edgesTraversed(), 0);
+		pool.shutdown();
+	}
+
+	/**
+	 * Checks the percentiles of a latency histogram
+	 */
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 99; i++)
+			histogram.record(1000);
+		histogram.record(5_000_000);
+		assertEquals(histogram.getCount(), 100);
+		assertEquals(histogram.getMedianMillis(), 1024 / 1e6, 0);
+		assertEquals(histogram.getP99Millis(), 1024 / 1e6, 0);
+		assertEquals(histogram.getMaxMillis(), 5, 0);
+		assertEquals(histogram.getMeanMillis(), (99*1000 + 5e6) / 100 / 1e6, 
+				1e-9);
+		assertEquals(histogram.getHistogram()[9], 99);
+	}
+
+}
@@ -18,14 +18,14 @@ package com.ram.kainterview;
 
 import static org.junit.Assert.*;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.List;
 
 import org.junit.Test;
 
+import com.ram.kainterview.user.ComponentIndex;
 import com.ram.kainterview.user.User;
 import com.ram.kainterview.user.UserGenerator;
+import com.ram.kainterview.user.UserGraph;
 
 /**
  * Test cases for strict limited infection
@@ -37,7 +37,9 @@ public class StrictLimitedInfectionTest {
 	 */
 	@Test
 	public void testSingleUserInfection() {
-		User user = new User();
+		UserGraph.Builder builder = new UserGraph.Builder();
+		builder.addUser();
+		User user = builder.build().user(0);
 		assertEquals(user.graphSize(),1);
 		
 		user.totalInfect(1);
@@ -52,15 +54,17 @@ public class StrictLimitedInfectionTest {
 	 */
 	@Test
 	public void testSpecificInfection() {
-		User user = new User();
-		addStudent(user, new User());
-		addStudent(user, new User());
-		addStudent(user, new User());
+		UserGraph.Builder builder = new UserGraph.Builder();
+		int index = builder.addUser();
+		builder.addRelation(index, builder.addUser());
+		builder.addRelation(index, builder.addUser());
+		builder.addRelation(index, builder.addUser());
 		
-		addCoach(user, new User());
-		addCoach(user, new User());
-		addCoach(user, new User());
+		builder.addRelation(builder.addUser(), index);
+		builder.addRelation(builder.addUser(), index);
+		builder.addRelation(builder.addUser(), index);
 		
+		User user = builder.build().user(index);
 		assertEquals(user.graphSize(), 7);
 		
 		user.totalInfect(1);
@@ -77,41 +81,89 @@ public class StrictLimitedInfectionTest {
 	}
 	
 	/**
-	 * Adds a student to the given coach
-	 * @param coach the coach
-	 * @param student the student
+	 * Checks the component index against the graph size of every user
 	 */
-	private void addStudent(User coach, User student) {
-		Method method;
-		try {
-			method = User.class.getDeclaredMethod("addStudent", 
-					new Class[]{ User.class });
-			method.setAccessible(true);
-			method.invoke(coach, student);
-		} catch (IllegalAccessException | IllegalArgumentException | 
-				InvocationTargetException | NoSuchMethodException | 
-				SecurityException e) {
-			e.printStackTrace();
+	@Test
+	public void testComponentIndex() {
+		for (int i = 0; i < 20; i++) {
+			UserGraph graph = UserGenerator.generateGraph(15, 5, 3);
+			ComponentIndex components = graph.components();
+			
+			int total = 0;
+			for (int c = 0; c < components.bound(); c++) {
+				User user = graph.user(components.representative(c));
+				assertEquals(components.componentOf(user.id()),c);
+				assertEquals(components.size(c),user.graphSize());
+				total += components.size(c);
+			}
+			assertEquals(total,graph.size());
+			
+			for (User user : graph.users()) {
+				int c = components.componentOfSize(user.graphSize());
+				assertTrue(c >= 0);
+				assertEquals(components.size(c),user.graphSize());
+			}
+			assertEquals(components.componentOfSize(0),-1);
+			assertEquals(components.componentOfSize(graph.size()+1),-1);
+		}
+	}
+	
+	/**
+	 * Checks strict infection across multiple components against an exhaustive
+	 * subset-sum of the component sizes
+	 */
+	@Test
+	public void testMultipleComponents() {
+		for (int i = 0; i < 20; i++) {
+			UserGraph graph = UserGenerator.generateGraph(30, 3, 2);
+			ComponentIndex components = graph.components();
+			
+			// reachable[s] iff some set of components has s users in total
+			boolean[] reachable = new boolean[graph.size()+1];
+			reachable[0] = true;
+			for (int c = 0; c < components.bound(); c++)
+				for (int s = graph.size(); s >= components.size(c); s--)
+					reachable[s] |= reachable[s-components.size(c)];
+			
+			for (int num = 1; num <= graph.size(); num++) {
+				int[] selected = components.componentsOfTotalSize(num);
+				assertEquals(reachable[num],selected != null);
+				if (selected == null)
+					continue;
+				
+				int total = 0;
+				boolean[] used = new boolean[components.bound()];
+				for (int c : selected) {
+					assertFalse(used[c]);
+					used[c] = true;
+					total += components.size(c);
+				}
+				assertEquals(total,num);
+			}
+			assertNull(components.componentsOfTotalSize(graph.size()+1));
+			assertNull(components.componentsOfTotalSize(Integer.MAX_VALUE));
 		}
 	}
 	
 	/**
-	 * Adds a coach to the given student
-	 * @param student the student
-	 * @param coach the coach
+	 * Checks that strict infection through the user base infects exactly the
+	 * requested number of users or none at all
 	 */
-	private void addCoach(User student, User coach) {
-		Method method;
-		try {
-			method = User.class.getDeclaredMethod("addCoach", 
-					new Class[]{ User.class });
-			method.setAccessible(true);
-			method.invoke(student, coach);
-		} catch (IllegalAccessException | IllegalArgumentException | 
-				InvocationTargetException | NoSuchMethodException | 
-				SecurityException e) {
-			e.printStackTrace();
+	@Test
+	public void testStrictInfect() {
+		UserGraph graph = UserGenerator.generateGraph(30, 3, 2, 7);
+		for (int num = 1; num <= graph.size() + 1; num++) {
+			int[] before = new int[graph.size()];
+			for (int u = 0; u < before.length; u++)
+				before[u] = graph.version(u);
+			int[] selected = graph.strictInfect(num);
+			int changed = 0;
+			for (int u = 0; u < before.length; u++)
+				if (graph.version(u) != before[u])
+					changed++;
+			assertEquals(selected == null ? 0 : num,changed);
 		}
+		assertNull(graph.strictInfect(graph.size() + 1));
 	}
 	
 }
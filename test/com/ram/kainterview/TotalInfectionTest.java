@@ -24,9 +24,12 @@ import java.util.List;
 
 import org.junit.Test;
 
+import com.ram.kainterview.user.BatchInfection;
+import com.ram.kainterview.user.ComponentIndex;
 import com.ram.kainterview.user.User;
 import com.ram.kainterview.user.UserGenerator;
 import com.ram.kainterview.user.UserGeneratorTest;
+import com.ram.kainterview.user.UserGraph;
 
 /**
  * Test cases for total infection
@@ -87,6 +90,78 @@ public class TotalInfectionTest {
 		}
 	}
 
+	/**
+	 * Infects a long coach-student chain (deep enough to overflow the thread 
+	 * stack with a recursive traversal)
+	 */
+	@Test
+	public void testDeepChainInfection() {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		int coach = builder.addUser();
+		for (int i = 1; i < 1000000; i++) {
+			int student = builder.addUser();
+			builder.addRelation(coach, student);
+			coach = student;
+		}
+		UserGraph graph = builder.build();
+		
+		User user = graph.user(graph.size()/2);
+		assertEquals(user.graphSize(),graph.size());
+		user.totalInfect(1);
+		assertEquals(graph.user(0).version(),1);
+		assertEquals(graph.user(graph.size()-1).version(),1);
+		
+		user.limitedInfect(2, graph.size());
+		assertEquals(graph.user(0).version(),2);
+		assertEquals(graph.user(graph.size()-1).version(),2);
+	}
+
+	/**
+	 * Infects the components of many seeds at once in parallel
+	 */
+	@Test
+	public void testBatchInfection() {
+		UserGraph graph = UserGenerator.generateGraph(2000, 4, 3);
+		ComponentIndex components = graph.components();
+		int[] seeds = new int[500];
+		boolean[] infected = new boolean[components.bound()];
+		for (int i = 0; i < seeds.length; i++) {
+			seeds[i] = (int) (Math.random()*graph.size());
+			infected[components.componentOf(seeds[i])] = true;
+		}
+		
+		long expected = 0;
+		for (int c = 0; c < components.bound(); c++)
+			if (infected[c])
+				expected += components.size(c);
+		assertEquals(BatchInfection.totalInfect(graph, seeds, 1),expected);
+		
+		for (User user : graph.users())
+			assertEquals(user.version(),
+					infected[components.componentOf(user.id())] ? 1 : 0);
+		checkUsers(graph.users());
+	}
+
+	/**
+	 * Checks that a batch infection moves a whole component even past a user
+	 * that is already on the new version
+	 */
+	@Test
+	public void testBatchInfectionPastInfectedUser() {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		int a = builder.addUser(0);
+		int b = builder.addUser(1);
+		int c = builder.addUser(0);
+		builder.addRelation(a, b);
+		builder.addRelation(b, c);
+		UserGraph graph = builder.build();
+		
+		assertEquals(BatchInfection.totalInfect(graph, new int[]{ a }, 1),2);
+		assertEquals(graph.version(a),1);
+		assertEquals(graph.version(b),1);
+		assertEquals(graph.version(c),1);
+	}
+
 	/**
 	 * Checks the users' versions using the classInv() method (accesses the 
 	 * private method using reflection)
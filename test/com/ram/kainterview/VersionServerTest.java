@@ -0,0 +1,162 @@
+/**
+ * Package for the infection implementations for the Khan Academy interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ram.kainterview.user.UserGraph;
+import com.ram.kainterview.user.VersionLog;
+
+/**
+ * Test cases for the HTTP service of version lookups and infections
+ */
+public class VersionServerTest {
+
+	/**
+	 * User base of a chain of three users and an isolated user
+	 */
+	private UserGraph graph;
+
+	/**
+	 * Service under test
+	 */
+	private VersionServer server;
+
+	/**
+	 * Starts the service on a free port
+	 * @throws IOException if the service cannot be started
+	 */
+	@Before
+	public void setUp() throws IOException {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		for (int i = 0; i < 4; i++)
+			builder.addUser();
+		builder.addRelation(0, 1);
+		builder.addRelation(1, 2);
+		graph = builder.build();
+		server = new VersionServer(graph, 0, null);
+		server.start();
+	}
+
+	/**
+	 * Stops the service
+	 */
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	/**
+	 * Checks single and batched lookups after an infection
+	 * @throws IOException if a request fails
+	 */
+	@Test
+	public void testLookups() throws IOException {
+		assertEquals(request("GET", "/version?user=2", null), "200 0");
+		assertTrue(request("POST", "/infect", "total 1 5").startsWith(
+				"200 total 1 5: 3 users changed"));
+		assertEquals(request("GET", "/version?user=2", null), "200 5");
+		assertEquals(request("GET", "/versions?users=0,3,1", null), 
+				"200 5\n0\n5\n");
+		assertEquals(request("POST", "/versions", "3 2\n"), "200 0\n5\n");
+	}
+
+	/**
+	 * Checks the answers to invalid requests
+	 * @throws IOException if a request fails
+	 */
+	@Test
+	public void testErrors() throws IOException {
+		assertEquals(request("GET", "/version?user=9", null), 
+				"404 Unknown user: 9");
+		assertEquals(request("GET", "/version", null), 
+				"400 Missing parameter: user");
+		assertTrue(request("POST", "/infect", "rollback").startsWith("400"));
+		assertTrue(request("GET", "/infect", null).startsWith("405"));
+	}
+
+	/**
+	 * Checks that a write-ahead log that cannot be written is answered with
+	 * status 500
+	 * @throws IOException if a request fails
+	 */
+	@Test
+	public void testLogFailure() throws IOException {
+		server.close();
+		Path path = Files.createTempFile("versions", ".log");
+		try {
+			VersionLog log = VersionLog.open(graph, path);
+			server = new VersionServer(graph, 0, log);
+			server.start();
+			// keep logging into the closed file
+			log.close();
+			graph.addVersionListener(log);
+			assertTrue(request("POST", "/infect", "total 3").startsWith(
+					"500 Write-ahead log error"));
+			graph.removeVersionListener(log);
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	/**
+	 * Sends a request to the service
+	 * @param method the HTTP method
+	 * @param path the path and query
+	 * @param body the body (or null)
+	 * @return the status code and the answer separated by a space
+	 * @throws IOException if the request fails
+	 */
+	private String request(String method, String path, String body) 
+			throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(
+				"http://localhost:" + server.port() + path).openConnection();
+		connection.setRequestMethod(method);
+		if (body != null) {
+			connection.setDoOutput(true);
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		int status = connection.getResponseCode();
+		ByteArrayOutputStream answer = new ByteArrayOutputStream();
+		try (InputStream in = status < 400 ? connection.getInputStream() : 
+				connection.getErrorStream()) {
+			byte[] buffer = new byte[1024];
+			int read;
+			while ((read = in.read(buffer)) > 0)
+				answer.write(buffer, 0, read);
+		}
+		return status + " " + 
+			new String(answer.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the versions stored per component
+ */
+public class ComponentVersionTest {
+
+	/**
+	 * Mixes total infection, single user changes and relation changes and 
+	 * compares the versions against a plain array per user
+	 */
+	@Test
+	public void testRandomChanges() {
+		Random random = new Random(7);
+		UserGraph graph = UserGenerator.generateGraph(40, 3, 3);
+		int[] expected = new int[graph.size()];
+		graph.components();
+		for (int step = 0; step < 2000; step++) {
+			int a = random.nextInt(graph.size());
+			int b = random.nextInt(graph.size());
+			int version = random.nextInt(4);
+			switch (random.nextInt(4)) {
+			case 0:
+				graph.user(a).totalInfect(version);
+				for (int u = 0; u < expected.length; u++)
+					if (graph.components().componentOf(u) == 
+							graph.components().componentOf(a))
+						expected[u] = version;
+				break;
+			case 1:
+				graph.setVersion(a, version);
+				expected[a] = version;
+				break;
+			case 2:
+				graph.addRelation(a, b);
+				break;
+			default:
+				graph.removeRelation(a, b);
+				break;
+			}
+			for (int u = 0; u < expected.length; u++)
+				assertEquals("step " + step, expected[u], graph.version(u));
+		}
+	}
+
+	/**
+	 * Checks that observers still see every user whose version changes
+	 */
+	@Test
+	public void testListeners() {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		for (int i = 0; i < 5; i++)
+			builder.addUser();
+		builder.addRelation(0, 1);
+		builder.addRelation(1, 2);
+		builder.addRelation(3, 4);
+		UserGraph graph = builder.build();
+		graph.setVersion(1, 2);
+		ChangeLog changes = new ChangeLog(graph.size());
+		graph.addVersionListener(changes);
+
+		graph.user(2).totalInfect(2);
+		int[] changed = changes.drain();
+		Arrays.sort(changed);
+		assertArrayEquals(new int[] {0, 2}, changed);
+		assertEquals(2, graph.version(0));
+		assertEquals(0, graph.version(3));
+	}
+
+}
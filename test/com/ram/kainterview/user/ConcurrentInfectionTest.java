@@ -0,0 +1,126 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+/**
+ * Test cases for infections and relation changes from several threads
+ */
+public class ConcurrentInfectionTest {
+
+	/**
+	 * Number of threads running infections
+	 */
+	private static final int THREADS = 4;
+
+	/**
+	 * Runs total infections from several threads and checks that every 
+	 * component still has a single version
+	 * @throws Exception if a thread fails
+	 */
+	@Test
+	public void testConcurrentTotals() throws Exception {
+		UserGraph graph = UserGenerator.generateGraph(200, 3, 3, 1);
+		run(graph, random -> {
+			User user = graph.user(random.nextInt(graph.size()));
+			user.totalInfect(random.nextInt(100));
+		});
+		for (int u = 0; u < graph.size(); u++)
+			assertEquals(graph.version(u), graph.version(
+					graph.components().representative(
+					graph.components().componentOf(u))));
+	}
+
+	/**
+	 * Mixes total and limited infections with relation changes from several
+	 * threads and checks the component index and the versions afterwards
+	 * @throws Exception if a thread fails
+	 */
+	@Test
+	public void testConcurrentChanges() throws Exception {
+		UserGraph graph = UserGenerator.generateGraph(200, 3, 3, 2);
+		run(graph, random -> {
+			int a = random.nextInt(graph.size());
+			int b = random.nextInt(graph.size());
+			switch (random.nextInt(4)) {
+			case 0:
+				graph.user(a).totalInfect(random.nextInt(100));
+				break;
+			case 1:
+				graph.user(a).exactInfect(random.nextInt(100), 5);
+				break;
+			case 2:
+				graph.addRelation(a, b);
+				break;
+			default:
+				graph.removeRelation(a, b);
+				break;
+			}
+		});
+
+		ComponentIndex rebuilt = new ComponentIndex(graph);
+		ComponentIndex components = graph.components();
+		assertEquals(rebuilt.count(), components.count());
+		for (int u = 0; u < graph.size(); u++)
+			for (int i = graph.studentStart(u); i < graph.studentEnd(u); i++)
+				assertEquals(components.componentOf(u), 
+						components.componentOf(graph.studentAt(i)));
+
+		// a final total infection of each component leaves it uniform
+		for (int u = 0; u < graph.size(); u++)
+			graph.user(u).totalInfect(u);
+		for (int u = 0; u < graph.size(); u++) {
+			int first = components.representative(components.componentOf(u));
+			assertEquals(graph.version(u), graph.version(first));
+		}
+	}
+
+	/**
+	 * Runs an operation many times from several threads
+	 * @param graph the user base
+	 * @param operation the operation given a random number generator
+	 * @throws Exception if a thread fails
+	 */
+	private static void run(UserGraph graph, 
+			Consumer<Random> operation) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		Future<?>[] futures = new Future<?>[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			Random random = new Random(t);
+			futures[t] = pool.submit(() -> {
+				for (int i = 0; i < 2000; i++)
+					operation.accept(random);
+			});
+		}
+		for (Future<?> future : futures)
+			future.get();
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test cases for adding and removing coach-student relations
+ */
+public class DynamicConnectivityTest {
+
+	/**
+	 * Adds and removes relations through the user model
+	 */
+	@Test
+	public void testAddRemoveRelations() {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		for (int i = 0; i < 3; i++)
+			builder.addUser();
+		UserGraph graph = builder.build();
+		User coach = graph.user(0);
+		User student = graph.user(1);
+		assertEquals(graph.components().count(),3);
+		
+		assertTrue(coach.addStudent(student));
+		assertFalse(student.addCoach(coach));
+		assertEquals(coach.students().get(0),student);
+		assertEquals(student.coaches().get(0),coach);
+		assertEquals(graph.components().count(),2);
+		assertEquals(coach.graphSize(),2);
+		
+		coach.totalInfect(1);
+		assertEquals(student.version(),1);
+		assertEquals(graph.user(2).version(),0);
+		
+		assertTrue(student.removeCoach(coach));
+		assertFalse(coach.removeStudent(student));
+		assertTrue(coach.students().isEmpty());
+		assertTrue(student.coaches().isEmpty());
+		assertEquals(graph.components().count(),3);
+		assertEquals(coach.graphSize(),1);
+	}
+	
+	/**
+	 * Checks illegal relation between users of different user bases
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testDifferentUserBases() {
+		User user1 = UserGenerator.generateGraph(1, 0, 1).user(0);
+		User user2 = UserGenerator.generateGraph(1, 0, 1).user(0);
+		user1.addStudent(user2);
+	}
+	
+	/**
+	 * Applies random relation changes and compares the incrementally 
+	 * maintained component index against one rebuilt from scratch
+	 */
+	@Test
+	public void testRandomChanges() {
+		Random random = new Random(42);
+		UserGraph graph = UserGenerator.generateGraph(20, 3, 2);
+		ComponentIndex components = graph.components();
+		
+		for (int i = 0; i < 2000; i++) {
+			int coach = random.nextInt(graph.size());
+			if (random.nextBoolean() && graph.numStudents(coach) > 0) {
+				int student = graph.studentAt(graph.studentStart(coach) + 
+						random.nextInt(graph.numStudents(coach)));
+				assertTrue(graph.removeRelation(coach, student));
+			} else {
+				int student = random.nextInt(graph.size());
+				assertEquals(!graph.hasRelation(coach, student),
+						graph.addRelation(coach, student));
+			}
+			checkComponents(graph, components);
+		}
+	}
+	
+	/**
+	 * Checks that a maintained component index partitions the users in the 
+	 * same way as an index rebuilt from scratch
+	 * @param graph the user base
+	 * @param components the maintained component index
+	 */
+	private void checkComponents(UserGraph graph, ComponentIndex components) {
+		ComponentIndex rebuilt = new ComponentIndex(graph);
+		assertEquals(components.count(),rebuilt.count());
+		
+		int[] mapping = new int[components.bound()];
+		Arrays.fill(mapping, -1);
+		for (int u = 0; u < graph.size(); u++) {
+			int c = components.componentOf(u);
+			int r = rebuilt.componentOf(u);
+			if (mapping[c] < 0)
+				mapping[c] = r;
+			assertEquals(mapping[c],r);
+			assertEquals(components.size(c),rebuilt.size(r));
+		}
+		
+		for (int c = 0; c < components.bound(); c++) {
+			if (components.size(c) == 0)
+				continue;
+			assertEquals(components.componentOf(components.representative(c)),
+					c);
+			int same = components.componentOfSize(components.size(c));
+			assertTrue(same >= 0);
+			assertEquals(components.size(same),components.size(c));
+		}
+	}
+	
+}
@@ -0,0 +1,155 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test cases for importing a user base from an edge list
+ */
+public class EdgeListImporterTest {
+
+	/**
+	 * Folder for the edge list files
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Writes an edge list file
+	 * @param content the content of the file
+	 * @return the file
+	 * @throws IOException if the file cannot be written
+	 */
+	private File write(String content) throws IOException {
+		File file = folder.newFile();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	/**
+	 * Checks that external ids are mapped to dense indices in order of first
+	 * appearance and that versions, comments, quotes and both separators are
+	 * supported
+	 * @throws IOException if the edge list cannot be read
+	 */
+	@Test
+	public void testImport() throws IOException {
+		File file = write("coach,student,version\n"
+				+ "# comment\n"
+				+ "alice,bob,2\r\n"
+				+ "alice\t\"carol\"\n"
+				+ "\n"
+				+ " dave , bob \n"
+				+ "erin,,5\n"
+				+ "carol,alice,1");
+		UserGraph graph = EdgeListImporter.read(file.toPath(), true);
+
+		IdDictionary ids = graph.externalIds();
+		assertEquals(graph.size(), 5);
+		assertEquals(ids.size(), 5);
+		assertEquals(ids.get(0), "alice");
+		assertEquals(ids.get(2), "carol");
+		assertEquals(ids.indexOf("dave"), 3);
+		assertEquals(ids.indexOf("frank"), -1);
+		assertEquals(graph.user(2).externalId(), "carol");
+		assertEquals(graph.user(2).id(), 2);
+
+		assertEquals(graph.relations(), 4);
+		assertTrue(graph.hasRelation(0, 1));
+		assertTrue(graph.hasRelation(0, 2));
+		assertTrue(graph.hasRelation(3, 1));
+		assertTrue(graph.hasRelation(2, 0));
+		assertEquals(graph.version(1), 2);
+		assertEquals(graph.version(0), 1);
+		assertEquals(graph.version(4), 5);
+		assertEquals(graph.numCoaches(4) + graph.numStudents(4), 0);
+	}
+
+	/**
+	 * Checks that duplicate relations and relations of a user with itself are
+	 * dropped
+	 * @throws IOException if the edge list cannot be read
+	 */
+	@Test
+	public void testDuplicates() throws IOException {
+		File file = write("1,2\n1,3\n1,2\n2,2\n3,1\n1,3\n");
+		UserGraph graph = EdgeListImporter.read(file.toPath(), false);
+		assertEquals(graph.size(), 3);
+		assertEquals(graph.relations(), 3);
+		assertEquals(graph.numStudents(0), 2);
+		assertEquals(graph.numStudents(1), 0);
+		assertEquals(graph.numCoaches(0), 1);
+	}
+
+	/**
+	 * Checks that a streamed user base larger than the read buffer is 
+	 * imported with the same users and relations
+	 * @throws IOException if the edge list cannot be written or read
+	 */
+	@Test
+	public void testGeneratedEdgeList() throws IOException {
+		File file = folder.newFile();
+		long relations = UserGenerator.generateToFile(file.toPath(), 5000, 10,
+				3, 7);
+		assertTrue(file.length() > 1 << 20);
+		UserGraph graph = EdgeListImporter.read(file.toPath(), false);
+
+		assertEquals(graph.relations(), relations);
+		IdDictionary ids = graph.externalIds();
+		for (int u = 0; u < graph.size(); u++)
+			assertEquals(ids.get(u), Integer.toString(u));
+	}
+
+	/**
+	 * Checks that an invalid version is rejected
+	 * @throws IOException if the edge list cannot be read
+	 */
+	@Test(expected=IOException.class)
+	public void testInvalidVersion() throws IOException {
+		EdgeListImporter.read(write("a,b,1\na,c,x\n").toPath(), false);
+	}
+
+	/**
+	 * Checks that a line with too many columns is rejected
+	 * @throws IOException if the edge list cannot be read
+	 */
+	@Test(expected=IOException.class)
+	public void testTooManyColumns() throws IOException {
+		EdgeListImporter.read(write("a,b,1,2\n").toPath(), false);
+	}
+
+	/**
+	 * Checks that a line without a coach is rejected
+	 * @throws IOException if the edge list cannot be read
+	 */
+	@Test(expected=IOException.class)
+	public void testMissingUser() throws IOException {
+		EdgeListImporter.read(write(",b\n").toPath(), false);
+	}
+
+}
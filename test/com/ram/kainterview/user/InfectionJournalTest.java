@@ -0,0 +1,160 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test cases for rolling back infections
+ */
+public class InfectionJournalTest {
+
+	/**
+	 * Rolls back total and limited infections over mixed versions
+	 */
+	@Test
+	public void testRollback() {
+		UserGraph graph = UserGenerator.generateGraph(30, 3, 3);
+		Random random = new Random(3);
+		for (int u = 0; u < graph.size(); u++)
+			graph.setVersion(u, random.nextInt(3));
+		int[] before = versions(graph);
+		InfectionJournal journal = new InfectionJournal(graph, 4);
+
+		journal.begin();
+		graph.user(0).totalInfect(7);
+		int[] afterTotal = versions(graph);
+		journal.begin();
+		graph.user(graph.size()-1).exactInfect(8, 5);
+		journal.begin();
+		graph.user(1).totalInfect(9);
+		assertEquals(journal.rollouts(), 3);
+
+		assertTrue(journal.rollback() > 0);
+		assertTrue(journal.rollback() > 0);
+		assertArrayEquals(afterTotal, versions(graph));
+		assertTrue(journal.rollback() > 0);
+		assertArrayEquals(before, versions(graph));
+		assertEquals(journal.rollback(), -1);
+		assertEquals(journal.size(), 0);
+	}
+
+	/**
+	 * Checks that only the last rollouts are kept
+	 */
+	@Test
+	public void testLimit() {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		builder.addUser();
+		UserGraph graph = builder.build();
+		InfectionJournal journal = new InfectionJournal(graph, 2);
+		for (int version = 1; version <= 5; version++) {
+			journal.begin();
+			graph.user(0).totalInfect(version);
+		}
+		assertEquals(journal.rollouts(), 2);
+		assertEquals(journal.size(), 2);
+		assertEquals(journal.rollback(), 1);
+		assertEquals(journal.rollback(), 1);
+		assertEquals(graph.version(0), 3);
+		assertEquals(journal.rollback(), -1);
+	}
+
+	/**
+	 * Journals total infections of uniform components as single deltas and 
+	 * rolls them back across relation changes
+	 */
+	@Test
+	public void testComponentDeltas() {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		for (int u = 0; u < 6; u++)
+			builder.addUser();
+		builder.addRelation(0, 1);
+		builder.addRelation(1, 2);
+		builder.addRelation(3, 4);
+		UserGraph graph = builder.build();
+		InfectionJournal journal = new InfectionJournal(graph, 4);
+
+		journal.begin();
+		graph.user(0).totalInfect(5);
+		assertEquals(journal.size(), 1);
+		journal.begin();
+		graph.user(3).totalInfect(6);
+		assertEquals(journal.size(), 2);
+		graph.addRelation(2, 3);
+		graph.removeRelation(0, 1);
+		assertEquals(journal.size(), 5);
+		journal.begin();
+		graph.user(5).totalInfect(7);
+
+		assertEquals(journal.rollback(), 1);
+		assertArrayEquals(new int[] {5, 5, 5, 6, 6, 0}, versions(graph));
+		assertEquals(journal.rollback(), 2);
+		assertArrayEquals(new int[] {5, 5, 5, 0, 0, 0}, versions(graph));
+		assertEquals(journal.rollback(), 3);
+		assertArrayEquals(new int[6], versions(graph));
+	}
+
+	/**
+	 * Checks that a rollout only journals the changes of the thread that 
+	 * began it and that an empty rollout is not kept
+	 * @throws InterruptedException if the test is interrupted
+	 */
+	@Test
+	public void testOwnChanges() throws InterruptedException {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		for (int u = 0; u < 4; u++)
+			builder.addUser();
+		builder.addRelation(0, 1);
+		builder.addRelation(2, 3);
+		UserGraph graph = builder.build();
+		InfectionJournal journal = new InfectionJournal(graph, 4);
+
+		journal.begin();
+		graph.user(0).totalInfect(1);
+		Thread other = new Thread(() -> graph.user(2).totalInfect(2));
+		other.start();
+		other.join();
+		journal.end();
+		graph.user(1).totalInfect(3);
+		journal.begin();
+		journal.end();
+		assertEquals(journal.rollouts(), 1);
+		assertEquals(journal.size(), 1);
+
+		assertEquals(journal.rollback(), 1);
+		assertArrayEquals(new int[] {0, 0, 2, 2}, versions(graph));
+	}
+
+	/**
+	 * Gets the version of every user
+	 * @param graph the user base
+	 * @return the versions
+	 */
+	private static int[] versions(UserGraph graph) {
+		int[] versions = new int[graph.size()];
+		for (int u = 0; u < versions.length; u++)
+			versions[u] = graph.version(u);
+		return versions;
+	}
+
+}
@@ -0,0 +1,106 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the scoring of the seeds of limited infection
+ */
+public class SeedScorerTest {
+
+	/**
+	 * Checks that the seed keeping a whole subtree together is preferred
+	 * 
+	 *         0
+	 *       1   2
+	 *      3 4
+	 * 
+	 */
+	@Test
+	public void testBestSeed() {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		for (int i = 0; i < 5; i++)
+			builder.addUser();
+		builder.addRelation(0, 1);
+		builder.addRelation(0, 2);
+		builder.addRelation(1, 3);
+		builder.addRelation(1, 4);
+		UserGraph graph = builder.build();
+
+		InfectionResult[] best = SeedScorer.bestSeeds(graph, 3, 2);
+		assertEquals(best.length,2);
+		assertEquals(best[0].seed(),1);
+		assertEquals(best[0].infected(),3);
+		assertEquals(best[0].splitPairs(),1);
+		assertTrue(best[1].splitPairs() >= 1);
+
+		for (User user : graph.users())
+			assertEquals(user.version(),0);
+	}
+
+	/**
+	 * Checks that the parallel ranking matches scoring every seed one by one
+	 */
+	@Test
+	public void testParallelRanking() {
+		UserGraph graph = UserGenerator.generateGraph(300, 5, 3, 11);
+		int users = 40;
+		int[] candidates = new int[graph.size()];
+		for (int u = 0; u < candidates.length; u++)
+			candidates[u] = u;
+
+		InfectionResult[] best = SeedScorer.bestSeeds(graph, users, 10, 
+				candidates, new ForkJoinPool(4));
+		assertEquals(best.length,10);
+		int better = 0;
+		for (int u = 0; u < graph.size(); u++) {
+			int seed = u;
+			InfectionResult score = graph.traverse(
+					traversal -> traversal.scoreInfect(seed, 1, users));
+			if (score.infected() > best[9].infected() || 
+					score.infected() == best[9].infected() && 
+					score.splitPairs() < best[9].splitPairs())
+				better++;
+		}
+		assertTrue(better < 10);
+		for (int i = 1; i < best.length; i++)
+			assertTrue(best[i-1].infected() > best[i].infected() ||
+					best[i-1].infected() == best[i].infected() &&
+					best[i-1].splitPairs() <= best[i].splitPairs());
+	}
+
+	/**
+	 * Checks that only a bounded sample of a large user base is scored
+	 */
+	@Test
+	public void testCandidateCap() {
+		UserGraph graph = UserGenerator.generateGraph(
+				4*SeedScorer.MAX_CANDIDATES, 0, 1, 3);
+		TraversalCounter counter = new TraversalCounter();
+		InfectionResult[] best = SeedScorer.bestSeeds(graph, 1, 1, counter);
+		assertEquals(best.length,1);
+		assertEquals(best[0].infected(),1);
+		assertEquals(counter.visited(),SeedScorer.MAX_CANDIDATES);
+	}
+
+}
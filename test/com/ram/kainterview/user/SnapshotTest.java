@@ -0,0 +1,164 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test cases for the binary snapshots of the user base
+ */
+public class SnapshotTest {
+
+	/**
+	 * Folder for the snapshot files
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Checks that a snapshot restores the versions and the relations in both
+	 * directions, including relations changed after the graph was built
+	 * @throws IOException if the snapshot cannot be written or read
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		UserGraph graph = UserGenerator.generateGraph(200, 5, 3, 42);
+		graph.user(0).totalInfect(3);
+		graph.addRelation(graph.size() - 1, 0);
+		graph.removeRelation(0, graph.studentAt(graph.studentStart(0)));
+
+		File file = folder.newFile();
+		Snapshot.write(graph, file.toPath());
+		UserGraph copy = Snapshot.read(file.toPath());
+
+		assertEquals(graph.size(), copy.size());
+		assertEquals(graph.relations(), copy.relations());
+		for (int u = 0; u < graph.size(); u++) {
+			assertEquals(graph.version(u), copy.version(u));
+			assertEquals(graph.numStudents(u), copy.numStudents(u));
+			for (int i = 0; i < graph.numStudents(u); i++)
+				assertEquals(graph.studentAt(graph.studentStart(u) + i),
+						copy.studentAt(copy.studentStart(u) + i));
+			assertEquals(graph.numCoaches(u), copy.numCoaches(u));
+			for (User coach : copy.user(u).coaches())
+				assertTrue(graph.hasRelation(coach.id(), u));
+		}
+		assertTrue(copy.addRelation(0, graph.size() - 1));
+	}
+
+	/**
+	 * Checks that the external ids of an imported roster are restored
+	 * @throws IOException if a file cannot be written or read
+	 */
+	@Test
+	public void testExternalIds() throws IOException {
+		File roster = folder.newFile();
+		Files.write(roster.toPath(), ("alice\tbob\nbob\tcarol\n" + 
+				"dave\n\u00e9mile\talice\n").getBytes("UTF-8"));
+		UserGraph graph = EdgeListImporter.read(roster.toPath(), false);
+
+		File file = folder.newFile();
+		Snapshot.write(graph, file.toPath());
+		UserGraph copy = Snapshot.read(file.toPath());
+
+		IdDictionary ids = copy.externalIds();
+		assertNotNull(ids);
+		assertEquals(ids.size(), graph.size());
+		for (int u = 0; u < graph.size(); u++) {
+			assertEquals(ids.get(u), graph.externalIds().get(u));
+			assertEquals(ids.indexOf(ids.get(u)), u);
+		}
+		assertEquals(ids.indexOf("frank"), -1);
+		assertTrue(copy.hasRelation(ids.indexOf("bob"), ids.indexOf("carol")));
+
+		// generated users have no external ids
+		File plain = folder.newFile();
+		Snapshot.write(UserGenerator.generateGraph(10, 2, 2, 3), 
+				plain.toPath());
+		assertNull(Snapshot.read(plain.toPath()).externalIds());
+	}
+
+	/**
+	 * Checks that an empty user base can be saved and restored
+	 * @throws IOException if the snapshot cannot be written or read
+	 */
+	@Test
+	public void testEmpty() throws IOException {
+		File file = folder.newFile();
+		Snapshot.write(new UserGraph.Builder().build(), file.toPath());
+		assertEquals(Snapshot.read(file.toPath()).size(), 0);
+	}
+
+	/**
+	 * Checks that a file which is not a snapshot is rejected
+	 * @throws IOException if the snapshot cannot be read
+	 */
+	@Test(expected=IOException.class)
+	public void testInvalidSnapshot() throws IOException {
+		File file = folder.newFile();
+		Files.write(file.toPath(), "0\t1\n".getBytes("US-ASCII"));
+		Snapshot.read(file.toPath());
+	}
+
+	/**
+	 * Checks that a snapshot whose coaches are not the transpose of its 
+	 * students is rejected
+	 * @throws IOException if the snapshot cannot be read
+	 */
+	@Test(expected=IOException.class)
+	public void testAsymmetricSnapshot() throws IOException {
+		UserGraph graph = UserGenerator.generateGraph(10, 5, 2, 1);
+		File file = folder.newFile();
+		Snapshot.write(graph, file.toPath());
+		// point the first coach of the coaches array at another user
+		int position = 5*4 + 4*(3*graph.size() + graph.relations());
+		ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath()))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		bytes.putInt(position, 
+				(bytes.getInt(position) + 1) % graph.size());
+		Files.write(file.toPath(), bytes.array());
+		Snapshot.read(file.toPath());
+	}
+
+	/**
+	 * Checks that a truncated snapshot is rejected
+	 * @throws IOException if the snapshot cannot be read
+	 */
+	@Test(expected=IOException.class)
+	public void testTruncatedSnapshot() throws IOException {
+		File file = folder.newFile();
+		Snapshot.write(UserGenerator.generateGraph(10, 5, 2, 1), 
+				file.toPath());
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		Files.write(file.toPath(), Arrays.copyOf(bytes, 
+				bytes.length - 4));
+		Snapshot.read(file.toPath());
+	}
+
+}
@@ -19,11 +19,19 @@ package com.ram.kainterview.user;
 
 import static org.junit.Assert.*;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.ram.kainterview.user.User;
 import com.ram.kainterview.user.UserGenerator;
@@ -33,6 +41,12 @@ import com.ram.kainterview.user.UserGenerator;
  */
 public class UserGeneratorTest {
 
+	/**
+	 * Folder for the generated files
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	/**
 	 * Tests standard user generation and ensures no duplication and checks 
 	 * maximum student size restriction
@@ -76,6 +90,68 @@ public class UserGeneratorTest {
 		UserGenerator.generateUsers(50, 50, 3);
 	}
 	
+	/**
+	 * Checks that the seeded generator is reproducible, respects the maximum 
+	 * number of students and does not duplicate relations
+	 */
+	@Test
+	public void testSeededGeneration() {
+		UserGraph graph = UserGenerator.generateGraph(1000, 10, 3, 42);
+		UserGraph same = UserGenerator.generateGraph(1000, 10, 3, 42);
+		assertTrue(graph.size() >= 1000);
+		assertEquals(graph.size(), same.size());
+		assertEquals(graph.relations(), same.relations());
+		for (int user = 0; user < graph.size(); user++) {
+			assertTrue(graph.numStudents(user) <= 10);
+			assertEquals(graph.numStudents(user), same.numStudents(user));
+			assertEquals(graph.numCoaches(user), same.numCoaches(user));
+			for (int i = 0; i < graph.numStudents(user); i++) {
+				assertEquals(graph.studentAt(graph.studentStart(user) + i),
+						same.studentAt(same.studentStart(user) + i));
+			}
+			checkStudents(graph.user(user), 10, 1);
+		}
+		assertNotEquals(graph.relations(), 
+				UserGenerator.generateGraph(1000, 10, 3, 7).relations());
+	}
+
+	/**
+	 * Checks that the streamed user base is reproducible, numbers the users 
+	 * densely and does not duplicate relations
+	 * @throws IOException if the files cannot be written
+	 */
+	@Test
+	public void testStreamedGeneration() throws IOException {
+		File file = folder.newFile();
+		File same = folder.newFile();
+		long relations = UserGenerator.generateToFile(file.toPath(), 200, 10,
+				3, 42);
+		UserGenerator.generateToFile(same.toPath(), 200, 10, 3, 42);
+		assertTrue(Arrays.equals(Files.readAllBytes(file.toPath()), 
+				Files.readAllBytes(same.toPath())));
+
+		BitSet users = new BitSet();
+		Set<Long> seen = new HashSet<Long>();
+		int[] numStudents = new int[1 << 16];
+		long count = 0;
+		for (String line : Files.readAllLines(file.toPath())) {
+			String[] columns = line.split("\t");
+			int coach = Integer.parseInt(columns[0]);
+			users.set(coach);
+			if (columns.length == 1)
+				continue;
+			int student = Integer.parseInt(columns[1]);
+			users.set(student);
+			assertNotEquals(coach, student);
+			assertTrue(seen.add(((long) coach << 32) | student));
+			assertTrue(++numStudents[coach] <= 10);
+			count++;
+		}
+		assertEquals(relations, count);
+		assertTrue(users.cardinality() >= 200);
+		assertEquals(users.length(), users.cardinality());
+	}
+
 	/**
 	 * Ensures functionality for single user generation (edge case)
 	 */
@@ -120,27 +196,21 @@ public class UserGeneratorTest {
 	 * @return the list of all users in the graph
 	 */
 	public static List<User> generateSpecificUsers() {
-		List<User> users = new ArrayList<>(6);
+		UserGraph.Builder users = new UserGraph.Builder();
 		
-		User coach1 = new User();
-		User student1 = new User();
-		User student2 = new User();
-		coach1.addStudent(student1);
-		coach1.addStudent(student2);
+		int coach1 = users.addUser();
+		int student1 = users.addUser();
+		int student2 = users.addUser();
+		users.addRelation(coach1, student1);
+		users.addRelation(coach1, student2);
 		
-		User coach2 = new User();
-		User student3 = new User();
-		User student4 = new User();
-		coach2.addStudent(student3);
-		coach2.addStudent(student4);
+		int coach2 = users.addUser();
+		int student3 = users.addUser();
+		int student4 = users.addUser();
+		users.addRelation(coach2, student3);
+		users.addRelation(coach2, student4);
 		
-		users.add(coach1);
-		users.add(student1);
-		users.add(student2);
-		users.add(coach2);
-		users.add(student3);
-		users.add(student4);
-		return users;
+		return users.build().users();
 	}
 	
 }
@@ -0,0 +1,130 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the compact user base store
+ */
+public class UserGraphTest {
+
+	/**
+	 * Checks that relations are stored in both directions in insertion order
+	 */
+	@Test
+	public void testRelations() {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		for (int i = 0; i < 4; i++)
+			builder.addUser();
+		builder.addRelation(0, 2);
+		builder.addRelation(1, 2);
+		builder.addRelation(0, 1);
+		builder.addRelation(0, 3);
+		UserGraph graph = builder.build();
+		
+		assertEquals(graph.size(),4);
+		assertEquals(graph.relations(),4);
+		
+		List<User> students = graph.user(0).students();
+		assertEquals(students.size(),3);
+		assertEquals(students.get(0),graph.user(2));
+		assertEquals(students.get(1),graph.user(1));
+		assertEquals(students.get(2),graph.user(3));
+		
+		List<User> coaches = graph.user(2).coaches();
+		assertEquals(coaches.size(),2);
+		assertEquals(coaches.get(0),graph.user(0));
+		assertEquals(coaches.get(1),graph.user(1));
+		
+		assertTrue(graph.user(3).students().isEmpty());
+		assertEquals(graph.user(1).graphSize(),4);
+	}
+	
+	/**
+	 * Checks that initial versions are kept
+	 */
+	@Test
+	public void testVersions() {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		for (int i = 0; i < 100; i++)
+			builder.addUser(i);
+		UserGraph graph = builder.build();
+		
+		for (int i = 0; i < 100; i++) {
+			assertEquals(graph.user(i).version(),i);
+			assertEquals(graph.user(i).id(),i);
+			assertEquals(graph.user(i).externalId(),Integer.toString(i));
+		}
+		assertNull(graph.externalIds());
+	}
+	
+	/**
+	 * Checks that user views are read-only
+	 */
+	@Test(expected=UnsupportedOperationException.class)
+	public void testReadOnlyViews() {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		builder.addRelation(builder.addUser(), builder.addUser());
+		UserGraph graph = builder.build();
+		graph.user(0).students().add(graph.user(0));
+	}
+	
+	/**
+	 * Checks illegal relation to a user that was never added
+	 */
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testInvalidRelation() {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		builder.addRelation(builder.addUser(), 1);
+	}
+	
+	/**
+	 * Checks that the change log records each changed user exactly once
+	 */
+	@Test
+	public void testChangeLog() {
+		UserGraph.Builder builder = new UserGraph.Builder();
+		for (int i = 0; i < 5; i++)
+			builder.addUser(i < 2 ? 1 : 0);
+		builder.addRelation(0, 1);
+		builder.addRelation(1, 2);
+		builder.addRelation(3, 4);
+		UserGraph graph = builder.build();
+		ChangeLog changes = new ChangeLog(graph.size());
+		graph.addVersionListener(changes);
+		
+		graph.user(0).totalInfect(1);
+		graph.user(0).totalInfect(2);
+		assertEquals(changes.size(),3);
+		int[] changed = changes.drain();
+		Arrays.sort(changed);
+		assertArrayEquals(changed,new int[]{ 0, 1, 2 });
+		assertEquals(changes.drain().length,0);
+		
+		graph.removeVersionListener(changes);
+		graph.user(3).totalInfect(1);
+		assertEquals(changes.size(),0);
+	}
+	
+}
@@ -0,0 +1,219 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test cases for the write-ahead log of the versions
+ */
+public class VersionLogTest {
+
+	/**
+	 * Temporary folder for the logs
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Replays the committed version and relation changes into a fresh copy 
+	 * of the user base
+	 * @throws IOException if a log cannot be written or read
+	 */
+	@Test
+	public void testReplay() throws IOException {
+		Path path = folder.getRoot().toPath().resolve("versions.log");
+		UserGraph graph = UserGenerator.generateGraph(50, 3, 3, 11);
+		VersionLog log = VersionLog.open(graph, path);
+		graph.user(0).totalInfect(3);
+		graph.user(graph.size()-1).exactInfect(5, 4);
+		log.commit();
+		graph.addRelation(1, graph.size()-1);
+		graph.user(1).totalInfect(6);
+		log.close();
+		assertTrue(log.size() > 0);
+
+		UserGraph copy = UserGenerator.generateGraph(50, 3, 3, 11);
+		VersionLog.open(copy, path).close();
+		assertTrue(copy.hasRelation(1, graph.size()-1));
+		for (int u = 0; u < graph.size(); u++)
+			assertEquals(graph.version(u), copy.version(u));
+	}
+
+	/**
+	 * Checks that a checkpoint empties the log and that the changes after it
+	 * replay into the snapshot it wrote
+	 * @throws IOException if a log or snapshot cannot be written or read
+	 */
+	@Test
+	public void testCheckpoint() throws IOException {
+		Path path = folder.getRoot().toPath().resolve("versions.log");
+		Path snapshot = folder.getRoot().toPath().resolve("users.snap");
+		UserGraph graph = UserGenerator.generateGraph(50, 3, 3, 11);
+		VersionLog log = VersionLog.open(graph, path);
+		graph.user(0).totalInfect(3);
+		graph.addRelation(1, graph.size()-1);
+		log.checkpoint(snapshot);
+		// only the header is left
+		assertEquals(4*4 + 8, Files.size(path));
+		graph.user(graph.size()-1).exactInfect(5, 4);
+		log.close();
+
+		UserGraph copy = Snapshot.read(snapshot);
+		VersionLog.open(copy, path).close();
+		assertTrue(copy.hasRelation(1, graph.size()-1));
+		for (int u = 0; u < graph.size(); u++)
+			assertEquals(graph.version(u), copy.version(u));
+	}
+
+	/**
+	 * Checks that a batch torn by a crash is dropped and overwritten
+	 * @throws IOException if a log cannot be written or read
+	 */
+	@Test
+	public void testTornBatch() throws IOException {
+		Path path = folder.getRoot().toPath().resolve("versions.log");
+		UserGraph graph = UserGenerator.generateGraph(20, 2, 2, 5);
+		VersionLog log = VersionLog.open(graph, path);
+		graph.user(0).totalInfect(1);
+		log.close();
+		try (FileChannel channel = FileChannel.open(path, 
+				StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.wrap(new byte[] {3, 0, 0, 0, 1, 2}));
+		}
+
+		UserGraph copy = UserGenerator.generateGraph(20, 2, 2, 5);
+		log = VersionLog.open(copy, path);
+		assertEquals(copy.version(0), 1);
+		copy.user(0).totalInfect(2);
+		log.close();
+
+		UserGraph again = UserGenerator.generateGraph(20, 2, 2, 5);
+		VersionLog.open(again, path).close();
+		for (int u = 0; u < copy.size(); u++)
+			assertEquals(copy.version(u), again.version(u));
+	}
+
+	/**
+	 * Checks that commits from several threads all become durable
+	 * @throws Exception if a log cannot be written or read
+	 */
+	@Test
+	public void testConcurrentCommits() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("versions.log");
+		UserGraph graph = UserGenerator.generateGraph(400, 0, 1, 9);
+		VersionLog log = VersionLog.open(graph, path);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			int first = t;
+			threads[t] = new Thread(() -> {
+				try {
+					for (int u = first; u < graph.size(); u += threads.length) {
+						graph.user(u).totalInfect(u + 1);
+						log.commit();
+					}
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		log.close();
+
+		UserGraph copy = UserGenerator.generateGraph(400, 0, 1, 9);
+		VersionLog.open(copy, path).close();
+		for (int u = 0; u < copy.size(); u++)
+			assertEquals(u + 1, copy.version(u));
+	}
+
+	/**
+	 * Checks that a log of another user base is rejected
+	 * @throws IOException always
+	 */
+	@Test(expected=IOException.class)
+	public void testOtherUserBase() throws IOException {
+		Path path = folder.getRoot().toPath().resolve("versions.log");
+		VersionLog.open(UserGenerator.generateGraph(3, 0, 1), path).close();
+		VersionLog.open(UserGenerator.generateGraph(4, 0, 1), path);
+	}
+
+	/**
+	 * Checks that a log of a user base with as many users and relations but 
+	 * other relations is rejected
+	 * @throws IOException always
+	 */
+	@Test(expected=IOException.class)
+	public void testOtherRelations() throws IOException {
+		Path path = folder.getRoot().toPath().resolve("versions.log");
+		UserGraph graph = UserGenerator.generateGraph(20, 2, 2, 5);
+		VersionLog.open(graph, path).close();
+		UserGraph other = UserGenerator.generateGraph(20, 2, 2, 5);
+		int student = other.studentAt(other.studentStart(0));
+		other.removeRelation(0, student);
+		other.addRelation(student, 0);
+		assertEquals(graph.relations(), other.relations());
+		VersionLog.open(other, path);
+	}
+
+	/**
+	 * Checks that a log stops accepting changes once a batch fails to be 
+	 * written
+	 * @throws IOException if a log cannot be opened
+	 */
+	@Test
+	public void testFailedLog() throws IOException {
+		Path path = folder.getRoot().toPath().resolve("versions.log");
+		UserGraph graph = UserGenerator.generateGraph(20, 2, 2, 5);
+		VersionLog log = VersionLog.open(graph, path);
+		log.close();
+		log.versionChanged(0, 0, 1);
+		try {
+			log.commit();
+			fail();
+		} catch (IOException e) {
+			// the channel is closed
+		}
+		try {
+			log.commit();
+			fail();
+		} catch (IOException e) {
+			assertNotNull(e.getCause());
+		}
+		try {
+			log.versionChanged(1, 0, 1);
+			fail();
+		} catch (UncheckedIOException e) {
+			assertNotNull(e.getCause().getCause());
+		}
+	}
+
+}
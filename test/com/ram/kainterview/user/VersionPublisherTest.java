@@ -0,0 +1,122 @@
+/**
+ * Package for the users in the infection implementations for the Khan Academy 
+ * interview
+ * 
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016 Ram Vellanki
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software.
+ */
+package com.ram.kainterview.user;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the published snapshots of the versions
+ */
+public class VersionPublisherTest {
+
+	/**
+	 * Checks that snapshots are published after infections and never change
+	 */
+	@Test
+	public void testPublication() {
+		UserGraph graph = UserGenerator.generateGraph(5000, 2, 2, 4);
+		VersionPublisher publisher = new VersionPublisher(graph);
+		VersionSnapshot first = publisher.current();
+		assertEquals(first.size(), graph.size());
+
+		graph.user(graph.size()-1).totalInfect(3);
+		graph.user(0).exactInfect(4, 2);
+		VersionSnapshot last = publisher.current();
+		assertEquals(last.sequence(), 2);
+		for (int u = 0; u < graph.size(); u++) {
+			assertEquals(first.version(u), 0);
+			assertEquals(last.version(u), graph.version(u));
+		}
+
+		// changes outside infections wait for an explicit publication
+		int before = graph.version(1);
+		graph.setVersion(1, 9);
+		assertSame(last, publisher.current());
+		publisher.publish();
+		assertEquals(publisher.current().version(1), 9);
+		assertEquals(last.version(1), before);
+	}
+
+	/**
+	 * Checks that an infection is published when it finishes even while 
+	 * another one is in progress
+	 * @throws InterruptedException if the test is interrupted
+	 */
+	@Test
+	public void testOverlappingInfections() throws InterruptedException {
+		UserGraph graph = UserGenerator.generateGraph(100, 2, 2, 6);
+		VersionPublisher publisher = new VersionPublisher(graph);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch finish = new CountDownLatch(1);
+		Thread slow = new Thread(() -> {
+			graph.infectionStarted();
+			graph.setVersion(0, 7);
+			started.countDown();
+			try {
+				finish.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			graph.infectionFinished();
+		});
+		slow.start();
+		started.await();
+
+		int last = graph.size()-1;
+		graph.user(last).exactInfect(3, 1);
+		assertEquals(publisher.current().version(last), 3);
+		assertEquals(publisher.current().version(0), 0);
+		finish.countDown();
+		slow.join();
+		assertEquals(publisher.current().version(0), 7);
+		assertEquals(publisher.current().version(last), 3);
+	}
+
+	/**
+	 * Checks that readers never see a partial total infection
+	 * @throws InterruptedException if the reader is interrupted
+	 */
+	@Test
+	public void testNoPartialInfection() throws InterruptedException {
+		UserGraph graph = UserGenerator.generateGraph(1, 20, 3, 8);
+		VersionPublisher publisher = new VersionPublisher(graph);
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicBoolean partial = new AtomicBoolean();
+		Thread reader = new Thread(() -> {
+			while (!done.get()) {
+				VersionSnapshot snapshot = publisher.current();
+				for (int u = 1; u < snapshot.size(); u++)
+					if (snapshot.version(u) != snapshot.version(0))
+						partial.set(true);
+			}
+		});
+		reader.start();
+		for (int version = 1; version <= 200; version++)
+			graph.user(0).totalInfect(version);
+		done.set(true);
+		reader.join();
+		assertFalse(partial.get());
+		assertEquals(publisher.current().version(graph.size()-1), 200);
+	}
+
+}